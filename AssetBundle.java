@@ -0,0 +1,93 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * An asset bundle is a single file holding all images of the game,
+ * already decoded and scaled (it is written by AssetPacker). The file is
+ * mapped into memory, and an image is built by copying its pixels, so no
+ * PNG has to be decoded while the game runs.
+ *
+ * File layout (all numbers big-endian):
+ *     int magic, int version, int number of images
+ *     per image: short name length, name (UTF-8), int width, int height,
+ *                long offset of the pixels
+ *     pixels: width * height ARGB ints per image
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class AssetBundle
+{
+    public static final int MAGIC = 0x574F5450; // "WOTP"
+    public static final int VERSION = 1;
+
+    private MappedByteBuffer buffer;
+    private HashMap<String, Entry> entries;
+
+    /**
+     * Open the bundle in the file "fileName", and read its index.
+     */
+    public AssetBundle(String fileName) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException(fileName + " is not an asset bundle.");
+        }
+        int count = buffer.getInt();
+        entries = new HashMap<>();
+        for(int i = 0; i < count; i++) {
+            byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            Entry entry = new Entry(buffer.getInt(), buffer.getInt(), buffer.getLong());
+            entries.put(new String(name, StandardCharsets.UTF_8), entry);
+        }
+    }
+
+    /**
+     * Return the image that was packed from the file "fileName", if it was
+     * packed at exactly the given size.
+     * @return The image, or null if the bundle does not contain it.
+     */
+    public BufferedImage getImage(String fileName, int width, int height)
+    {
+        Entry entry = entries.get(fileName);
+        if(entry == null || entry.width != width || entry.height != height) {
+            return null;
+        }
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        // a duplicate has its own position, so several threads can read at once.
+        ByteBuffer pixelData = buffer.duplicate();
+        pixelData.position((int) entry.offset);
+        pixelData.asIntBuffer().get(pixels);
+        return image;
+    }
+
+    /**
+     * The position and size of one image in the bundle.
+     */
+    private static class Entry
+    {
+        private int width, height;
+        private long offset;
+
+        private Entry(int width, int height, long offset)
+        {
+            this.width = width;
+            this.height = height;
+            this.offset = offset;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import javax.imageio.ImageIO;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * Packs all images of the game into one asset bundle (see AssetBundle).
+ * Rooms and other full-size images are scaled to the default room size
+ * of the GUI, characters to the default character size. Run the main
+ * method from the project folder whenever an image changes; the GUI uses
+ * the bundle if it exists, and reads the PNG files otherwise.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class AssetPacker
+{
+    public static final String BUNDLE_FILE = "images/sprites.pack";
+    public static final int ROOM_SIZE = 540;
+    public static final int CHARACTER_SIZE = 100;
+
+    private ArrayList<String> names = new ArrayList<>();
+    private ArrayList<BufferedImage> images = new ArrayList<>();
+
+    public static void main(String args[]) throws IOException {
+        AssetPacker packer = new AssetPacker();
+        packer.addFolder("images/rooms", ROOM_SIZE);
+        packer.addFolder("images/other", ROOM_SIZE);
+        packer.addFolder("images/characters", CHARACTER_SIZE);
+        packer.write(BUNDLE_FILE);
+        System.out.println("Packed " + packer.names.size() + " images into " + BUNDLE_FILE + ".");
+    }
+
+    /**
+     * Read every PNG file in a folder, and scale it to size x size.
+     */
+    public void addFolder(String folder, int size) throws IOException
+    {
+        String[] fileNames = new File(folder).list();
+        Arrays.sort(fileNames);
+        for(String fileName : fileNames) {
+            if(fileName.endsWith(".png")) {
+                String name = folder + "/" + fileName;
+                names.add(name);
+                images.add(scale(ImageIO.read(new File(name)), size));
+            }
+        }
+    }
+
+    /**
+     * Scale an image the same way the GUI does (SCALE_SMOOTH).
+     */
+    private BufferedImage scale(BufferedImage picture, int size)
+    {
+        BufferedImage scaled = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = scaled.createGraphics();
+        graphics.drawImage(picture.getScaledInstance(size, size, Image.SCALE_SMOOTH), 0, 0, null);
+        graphics.dispose();
+        return scaled;
+    }
+
+    /**
+     * Write the index and the pixels of all images to "fileName".
+     */
+    public void write(String fileName) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(fileName)))) {
+            out.writeInt(AssetBundle.MAGIC);
+            out.writeInt(AssetBundle.VERSION);
+            out.writeInt(names.size());
+
+            long offset = 12;
+            for(String name : names) {
+                offset += 2 + name.getBytes(StandardCharsets.UTF_8).length + 16;
+            }
+            for(int i = 0; i < names.size(); i++) {
+                byte[] name = names.get(i).getBytes(StandardCharsets.UTF_8);
+                BufferedImage image = images.get(i);
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeInt(image.getWidth());
+                out.writeInt(image.getHeight());
+                out.writeLong(offset);
+                offset += 4L * image.getWidth() * image.getHeight();
+            }
+            for(BufferedImage image : images) {
+                int[] pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+                for(int pixel : pixels) {
+                    out.writeInt(pixel);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import javax.swing.SwingUtilities;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * While the player reads the description of a room, the prefetcher
+ * reads and scales the images of the rooms next to it (and of the
+ * characters in those rooms) on a background thread, and puts them into
+ * the SpriteCache. When the player then moves, the images are already
+ * there. Prefetches for a room the player has left are cancelled, but
+ * an image already being read is always finished and kept: a cancelled
+ * prefetch stops only between images.
+ *
+ * The images of the room being shown (see load) are read on a second
+ * thread, so they never wait behind prefetches. If an image is being
+ * prefetched already, that thread waits for it in the SpriteCache instead
+ * of reading it again.
+ *
+ * Only to be used on the event dispatch thread; the rooms are given as
+ * RoomViews, so the background thread never looks at the game.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class AssetPrefetcher
+{
+    private SpriteCache sprites;
+    private ExecutorService executor, loader;
+    private ArrayList<Future<?>> tasks;
+    private volatile int generation;        // increased to stop the running prefetch
+
+    /**
+     * Create a prefetcher which fills the given cache.
+     */
+    public AssetPrefetcher(SpriteCache sprites)
+    {
+        this.sprites = sprites;
+        tasks = new ArrayList<>();
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "asset-prefetcher");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        loader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "asset-loader");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    }
+
+    /**
+     * Cancel the prefetches for the previous room, and start reading the
+     * images of the rooms that can be reached from "view".
+     * @param view The room the player has just entered.
+     * @param heightRoom The size at which rooms are displayed.
+     * @param heightChar The size at which characters are displayed.
+     */
+    public void prefetch(RoomView view, int heightRoom, int heightChar)
+    {
+        cancelPrefetches();
+
+        for(RoomView neighbor : view.getNeighbors()) {
+            final ArrayList<String> fileNames = new ArrayList<>();
+            final ArrayList<Integer> sizes = new ArrayList<>();
+            addFiles(neighbor, heightRoom, heightChar, fileNames, sizes);
+            final int started = generation;
+            tasks.add(executor.submit(new Runnable() {
+                    public void run() {
+                        load(fileNames, sizes, started);
+                    }
+                }));
+        }
+    }
+
+    /**
+     * Read the images of "view" (the room, the player and the characters
+     * in it) on the background thread, then run "then" on the event
+     * dispatch thread, where showing the room finds them all in the cache.
+     * Used when the room is shown at a new size, or before its images
+     * were prefetched. Prefetches for other rooms or sizes are cancelled.
+     */
+    public void load(RoomView view, int heightRoom, int heightChar, final Runnable then)
+    {
+        cancelPrefetches();
+
+        final ArrayList<String> fileNames = new ArrayList<>();
+        final ArrayList<Integer> sizes = new ArrayList<>();
+        addFiles(view, heightRoom, heightChar, fileNames, sizes);
+        // not kept in "tasks": a later prefetch must not cancel it.
+        loader.submit(new Runnable() {
+                public void run() {
+                    load(fileNames, sizes, -1);
+                    SwingUtilities.invokeLater(then);
+                }
+            });
+    }
+
+    /**
+     * Add the images of "view", and their sizes, to the lists.
+     */
+    private void addFiles(RoomView view, int heightRoom, int heightChar,
+                          ArrayList<String> fileNames, ArrayList<Integer> sizes)
+    {
+        fileNames.add(view.getFileName());
+        sizes.add(heightRoom);
+        if(view.isPlayerShown()) {
+            fileNames.add(RoomCanvas.PLAYER_FILE);
+            sizes.add(heightChar);
+        }
+        for(int i = 0; i < view.getCharacterCount(); i++) {
+            fileNames.add(view.getCharacterFileName(i));
+            sizes.add(heightChar);
+        }
+    }
+
+    /**
+     * Cancel the prefetches that have not started, and let the running one
+     * stop after the image it is reading.
+     */
+    private void cancelPrefetches()
+    {
+        generation++;
+        for(Future<?> task : tasks) {
+            task.cancel(false);
+        }
+        tasks.clear();
+    }
+
+    /**
+     * Read the given images into the cache. A prefetch started in
+     * "started" stops when prefetches are cancelled after that; -1 never
+     * stops.
+     */
+    private void load(ArrayList<String> fileNames, ArrayList<Integer> sizes, int started)
+    {
+        for(int i = 0; i < fileNames.size(); i++) {
+            if(started >= 0 && started != generation) {
+                return;
+            }
+            try {
+                sprites.prefetch(fileNames.get(i), sizes.get(i), sizes.get(i));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
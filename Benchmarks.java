@@ -0,0 +1,354 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * Micro benchmarks for the command hot path. Every benchmark is run for
+ * a number of warm-up iterations, followed by measured iterations of
+ * about one second each; the average time per call is reported.
+ * Results are printed, and written as JSON (in the same layout as JMH
+ * result files) so they can be compared from commit to commit.
+ *
+ * Usage: java Benchmarks [-f filter] [-wi n] [-i n] [-rf results.json]
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class Benchmarks
+{
+    private static volatile Object blackhole;
+    private static int consumed;
+
+    private ArrayList<Benchmark> benchmarks = new ArrayList<>();
+    private int warmupIterations = 5, iterations = 5;
+    private long iterationNanos = 1000000000L;
+
+    public static void main(String args[]) throws IOException {
+        String filter = "";
+        String resultFile = "benchmarks.json";
+        Benchmarks runner = new Benchmarks();
+        for(int i = 0; i < args.length; i += 2) {
+            // every option takes a value.
+            String option = i + 1 < args.length ? args[i] : "";
+            switch (option) {
+                case "-f":  filter = args[i + 1]; break;
+                case "-wi": runner.warmupIterations = Integer.parseInt(args[i + 1]); break;
+                case "-i":  runner.iterations = Integer.parseInt(args[i + 1]); break;
+                case "-rf": resultFile = args[i + 1]; break;
+                default:
+                    System.out.println("Usage: java Benchmarks [-f filter] [-wi n] [-i n] [-rf results.json]");
+                    return;
+            }
+        }
+        runner.createBenchmarks();
+        runner.run(filter, resultFile);
+    }
+
+    /**
+     * Create the benchmarks, and the rooms, items and characters they use.
+     */
+    private void createBenchmarks()
+    {
+        final Parser parser = new Parser();
+        for(String word : new String[] {"cheese", "chef", "book", "librarian"}) {
+            parser.addWord(word);
+        }
+        final CommandWords commandWords = new CommandWords();
+
+        final Item fuel = new Item("Fuel", "strange looking, neon blue fuel", 50);
+        final Room lobby = new Room("Lobby", "images/rooms/lobby.png");
+        Room hallway = new Room("Hallway (South Side)", "images/rooms/hallwaysouth.png");
+        lobby.setExit("north", new Room("Cafeteria", "images/rooms/cafeteria.png"));
+        lobby.setExit("east", new Room("Garden", "images/rooms/garden.png"));
+        lobby.setExit("west", hallway);
+        lobby.addItem(new Item("Ball", "a football", 30));
+        lobby.addItem(new Item("Book", "a heavy book", 35));
+        lobby.addPlayer(new Player("Child", "images/characters/child.png", null, null, null));
+        lobby.addPlayer(new Player("Thief", "images/characters/thief.png", null, null, null));
+        final int west = Symbols.lookup("west");
+
+        final Items items = new Items();
+        items.put(fuel);
+        items.put(new Item("Cheese", "a fragrant block of cheese", 25));
+        items.put(new Item("Flashlight", "a bright flashlight", 15));
+
+        final Player player = new Player("Bob", "images/characters/player.png", null, fuel, null);
+        player.enterRoom(lobby);
+
+        final Game game = new Game();
+        game.start();
+        game.updateGameState("Bob");
+
+        final Game played = new Game();
+        played.start();
+        for(String command : new String[] {"Bob", "go east", "take flashlight", "go upstairs",
+                                           "go north", "go west", "take cheese"}) {
+            played.updateGameState(command);
+        }
+        final byte[] saved = played.save();
+
+        benchmarks.add(new Benchmark("Parser.getCommand") {
+                Object run() { return parser.getCommand("give cheese chef"); }
+            });
+        benchmarks.add(new Benchmark("Parser.getCommand.long") {
+                Object run() { return parser.getCommand("give the blue book to librarian"); }
+            });
+        benchmarks.add(new Benchmark("CommandWords.getCommandWord") {
+                Object run() { return commandWords.getCommandWord("take"); }
+            });
+        benchmarks.add(new Benchmark("CommandWords.getCommandWord.typo") {
+                Object run() { return commandWords.getCommandWord("tlak"); }
+            });
+        benchmarks.add(new Benchmark("Room.getLongDescription") {
+                Object run() { return lobby.getLongDescription(); }
+            });
+        benchmarks.add(new Benchmark("Room.getExit") {
+                Object run() { return lobby.getExit(west); }
+            });
+        benchmarks.add(new Benchmark("Items.getNames") {
+                Object run() { return items.getNames(); }
+            });
+        benchmarks.add(new Benchmark("Items.getTotalWeight") {
+                Object run() { return items.getTotalWeight(); }
+            });
+        benchmarks.add(new Benchmark("Player.getLongDescription") {
+                Object run() { return player.getLongDescription(); }
+            });
+        benchmarks.add(new Benchmark("Game.processCommand") {
+                Object run() { return game.updateGameState("look"); }
+            });
+        benchmarks.add(new Benchmark("Game.save") {
+                Object run() { return played.save(); }
+            });
+        benchmarks.add(new Benchmark("Game.restore") {
+                Object run() { game.restore(saved); return game; }
+            });
+    }
+
+    /**
+     * Run the benchmarks whose name contains "filter", print the results
+     * and write them to "resultFile".
+     */
+    private void run(String filter, String resultFile) throws IOException
+    {
+        ArrayList<Benchmark> done = new ArrayList<>();
+        for(Benchmark benchmark : benchmarks) {
+            if(benchmark.name.contains(filter)) {
+                for(int i = 0; i < warmupIterations; i++) {
+                    benchmark.iterate(iterationNanos);
+                }
+                benchmark.scores = new double[iterations];
+                for(int i = 0; i < iterations; i++) {
+                    benchmark.scores[i] = benchmark.iterate(iterationNanos);
+                }
+                System.out.println(String.format(Locale.ROOT, "%-30s %12.3f +- %8.3f ns/op",
+                        benchmark.name, benchmark.getScore(), benchmark.getError()));
+                done.add(benchmark);
+            }
+        }
+        writeJson(done, resultFile);
+    }
+
+    /**
+     * Write the results in the layout of a JMH result file.
+     */
+    private void writeJson(ArrayList<Benchmark> done, String resultFile) throws IOException
+    {
+        try (PrintWriter out = new PrintWriter(new FileWriter(resultFile))) {
+            out.println("[");
+            for(int i = 0; i < done.size(); i++) {
+                Benchmark benchmark = done.get(i);
+                out.println("    {");
+                out.println("        \"benchmark\" : \"" + benchmark.name + "\",");
+                out.println("        \"mode\" : \"avgt\",");
+                out.println("        \"warmupIterations\" : " + warmupIterations + ",");
+                out.println("        \"measurementIterations\" : " + iterations + ",");
+                out.println("        \"primaryMetric\" : {");
+                out.println(String.format(Locale.ROOT, "            \"score\" : %.6f,", benchmark.getScore()));
+                out.println(String.format(Locale.ROOT, "            \"scoreError\" : %.6f,", benchmark.getError()));
+                out.println("            \"scoreUnit\" : \"ns/op\"");
+                out.println("        }");
+                out.println(i < done.size() - 1 ? "    }," : "    }");
+            }
+            out.println("]");
+        }
+        System.out.println("Results written to " + resultFile + ".");
+    }
+
+    /**
+     * Keep a result alive, so the JIT compiler cannot remove the work.
+     */
+    private static void consume(Object result)
+    {
+        if(result == blackhole) {
+            consumed++;
+        }
+    }
+
+    /**
+     * One benchmark: an operation that is called over and over again.
+     */
+    private abstract static class Benchmark
+    {
+        private String name;
+        private double[] scores;
+
+        Benchmark(String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * The operation being measured.
+         */
+        abstract Object run();
+
+        /**
+         * Call the operation for about "nanos" nanoseconds.
+         * @return The average time of one call, in nanoseconds.
+         */
+        double iterate(long nanos)
+        {
+            long calls = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                for(int i = 0; i < 1000; i++) {
+                    consume(run());
+                }
+                calls += 1000;
+                elapsed = System.nanoTime() - start;
+            } while(elapsed < nanos);
+            return (double) elapsed / calls;
+        }
+
+        /**
+         * @return The mean of the measured iterations.
+         */
+        double getScore()
+        {
+            double sum = 0;
+            for(double score : scores) {
+                sum += score;
+            }
+            return sum / scores.length;
+        }
+
+        /**
+         * @return Half the width of the 99.9% confidence interval of the
+         * score. As in JMH, the interval uses Student's t distribution with
+         * one degree of freedom fewer than the number of iterations, which
+         * is much wider than the normal distribution for few iterations.
+         */
+        double getError()
+        {
+            if(scores.length < 2) {
+                return Double.NaN;
+            }
+            double mean = getScore();
+            double sum = 0;
+            for(double score : scores) {
+                sum += (score - mean) * (score - mean);
+            }
+            double t = getStudentT(0.9995, scores.length - 1);
+            return t * Math.sqrt(sum / (scores.length - 1)) / Math.sqrt(scores.length);
+        }
+    }
+
+    /**
+     * @return The value below which Student's t distribution with "df"
+     * degrees of freedom lies with probability "p" (at least 0.5), found by
+     * bisection on the distribution function.
+     */
+    private static double getStudentT(double p, int df)
+    {
+        double low = 0, high = 1;
+        while(getStudentProbability(high, df) < p) {
+            high *= 2;
+        }
+        for(int i = 0; i < 100; i++) {
+            double middle = (low + high) / 2;
+            if(getStudentProbability(middle, df) < p) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return (low + high) / 2;
+    }
+
+    /**
+     * @return The probability that Student's t distribution with "df"
+     * degrees of freedom lies below "t" (for t at least 0).
+     */
+    private static double getStudentProbability(double t, int df)
+    {
+        return 1 - 0.5 * getIncompleteBeta(df / (df + t * t), df / 2.0, 0.5);
+    }
+
+    /**
+     * @return The regularized incomplete beta function I_x(a, b), from its
+     * continued fraction (as in Numerical Recipes, "betai").
+     */
+    private static double getIncompleteBeta(double x, double a, double b)
+    {
+        if(x <= 0 || x >= 1) {
+            return x <= 0 ? 0 : 1;
+        }
+        double front = Math.exp(getLogGamma(a + b) - getLogGamma(a) - getLogGamma(b)
+                                + a * Math.log(x) + b * Math.log(1 - x));
+        if(x < (a + 1) / (a + b + 2)) {
+            return front * getBetaFraction(x, a, b) / a;
+        }
+        return 1 - front * getBetaFraction(1 - x, b, a) / b;
+    }
+
+    /**
+     * @return The continued fraction of the incomplete beta function,
+     * evaluated with the modified Lentz method.
+     */
+    private static double getBetaFraction(double x, double a, double b)
+    {
+        double tiny = 1e-300;
+        double c = 1;
+        double d = 1 - (a + b) * x / (a + 1);
+        d = 1 / (Math.abs(d) < tiny ? tiny : d);
+        double result = d;
+        for(int m = 1; m <= 300; m++) {
+            for(int step = 0; step < 2; step++) {
+                double term = step == 0 ? m * (b - m) * x / ((a + 2 * m - 1) * (a + 2 * m))
+                                        : -(a + m) * (a + b + m) * x / ((a + 2 * m) * (a + 2 * m + 1));
+                d = 1 + term * d;
+                d = 1 / (Math.abs(d) < tiny ? tiny : d);
+                c = 1 + term / c;
+                c = Math.abs(c) < tiny ? tiny : c;
+                result *= d * c;
+            }
+            if(Math.abs(d * c - 1) < 1e-15) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The logarithm of the gamma function (Lanczos approximation).
+     */
+    private static double getLogGamma(double x)
+    {
+        double[] coefficients = {76.18009172947146, -86.50532032941677, 24.01409824083091,
+                                 -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5};
+        double y = x;
+        double tmp = x + 5.5;
+        tmp -= (x + 0.5) * Math.log(tmp);
+        double series = 1.000000000190015;
+        for(double coefficient : coefficients) {
+            series += coefficient / ++y;
+        }
+        return -tmp + Math.log(2.5066282746310005 * series / x);
+    }
+}
@@ -1,54 +1,139 @@
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * This class is part of the "World of Tomorrow" game.   
  *
- * This class stores characters in a HashMap, and
+ * This class stores characters in a SymbolMap, and
  * returns displayed names and image file names.
+ * Characters can be found by the symbol (see Symbols) of their name or
+ * of any of their aliases, and are listed in the order they were put.
  *
  * @author Sarunas Djacenko
  * @version 2017.12.08
  */
 public class Characters
 {
-    private HashMap characters = new HashMap();
+    private SymbolMap<Player> characters = new SymbolMap<>();
+    private SymbolMap<Player> aliases = new SymbolMap<>();
     
     public Characters()
     {
     }
     
     /**
-     *  Stores characters in a HashMap.
+     *  Stores a character under its name and its aliases. A character
+     *  with the same name is replaced, aliases and all.
      */
-    public void put(String name, Player player) {
-        characters.put(name, player);
+    public void put(Player player) {
+        Player previous = characters.put(player.getSymbol(), player);
+        if(previous != null) {
+            removeAliases(previous);
+        }
+        for(int alias : player.getAliasSymbols()) {
+            aliases.put(alias, player);
+        }
     }
 
     /**
-     * Returns displayed names of characters in the HashMap.
+     * Returns the character with the name (or alias) "symbol", or null.
+     */
+    public Player get(int symbol)
+    {
+        Player player = characters.get(symbol);
+        if(player == null) {
+            player = aliases.get(symbol);
+        }
+        return player;
+    }
+
+    /**
+     * Returns aliases of the characters.
+     */
+    public List<String> getAliasList()
+    {
+        ArrayList<String> names = new ArrayList<>();
+        for(int i = 0; i < aliases.size(); i++) {
+            names.add(Symbols.getName(aliases.getKey(i)));
+        }
+        return names;
+    }
+
+    /**
+     * Returns names (in lower case) of the characters.
+     */
+    public List<String> getNameList()
+    {
+        ArrayList<String> names = new ArrayList<>();
+        for(int i = 0; i < characters.size(); i++) {
+            names.add(characters.getValue(i).getName());
+        }
+        return names;
+    }
+
+    /**
+     * Returns the characters, in the order they were put.
+     */
+    public List<Player> getList()
+    {
+        ArrayList<Player> list = new ArrayList<>();
+        for(int i = 0; i < characters.size(); i++) {
+            list.add(characters.getValue(i));
+        }
+        return list;
+    }
+
+    /**
+     * Returns the number of characters.
+     */
+    public int size()
+    {
+        return characters.size();
+    }
+
+    /**
+     * Returns character number "index", in the order they were put.
+     */
+    public Player getByIndex(int index)
+    {
+        return characters.getValue(index);
+    }
+
+    /**
+     * Returns displayed names of the characters.
      */
     public String getNamesDisplayed() 
     {
         String returnString = "";
-        for(Iterator iter = characters.values().iterator(); iter.hasNext(); )
-            returnString += " " + ((Player) iter.next()).getNameDisplayed();
+        for(int i = 0; i < characters.size(); i++)
+            returnString += " " + characters.getValue(i).getNameDisplayed();
         
         return returnString;
     }
     
     /**
-     * Returns image file names of characters in the HashMap.
+     * Returns image file names of the characters.
      */
     public String getFileNames()
     {
         String returnString = "";
-        for(Iterator iter = characters.values().iterator(); iter.hasNext(); )
-            returnString += ((Player) iter.next()).getFileName() + " ";
-        if(returnString == "") {
+        for(int i = 0; i < characters.size(); i++)
+            returnString += characters.getValue(i).getFileName() + " ";
+        if(returnString.isEmpty()) {
             returnString = " ";
         }
         
         return returnString;
     }
-}
\ No newline at end of file
+
+    /**
+     * Removes the aliases that still find "player".
+     */
+    private void removeAliases(Player player) {
+        for(int alias : player.getAliasSymbols()) {
+            if(aliases.get(alias) == player) {
+                aliases.remove(alias);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * Tests of Characters. There is no test framework in the project: run
+ * the main method, which prints "CharactersTest: OK", or fails with the
+ * first check that does not hold.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class CharactersTest
+{
+    public static void main(String args[]) {
+        replacingACharacterRemovesItsAliases();
+        replacingKeepsAliasesOfOtherCharacters();
+        System.out.println("CharactersTest: OK");
+    }
+
+    /**
+     * A character that replaces another with the same name takes its
+     * place under the name; the aliases of the old character no longer
+     * find anything.
+     */
+    private static void replacingACharacterRemovesItsAliases()
+    {
+        Characters characters = new Characters();
+        Player guard = new Player("Guard", "guard.png", null, null, null);
+        guard.addAlias("watchman");
+        characters.put(guard);
+        check(characters.get(Symbols.intern("watchman")) == guard, "the alias finds the character");
+
+        Player newGuard = new Player("Guard", "newguard.png", null, null, null);
+        newGuard.addAlias("sentry");
+        characters.put(newGuard);
+        check(characters.get(Symbols.intern("guard")) == newGuard, "the name finds the new character");
+        check(characters.get(Symbols.intern("sentry")) == newGuard, "the new alias finds the new character");
+        check(characters.get(Symbols.intern("watchman")) == null, "the old alias finds nothing");
+        check(!characters.getAliasList().contains("watchman"), "the old alias is not listed");
+        check(characters.size() == 1, "there is one character");
+    }
+
+    /**
+     * Replacing a character does not remove an alias that has been given
+     * to another character since.
+     */
+    private static void replacingKeepsAliasesOfOtherCharacters()
+    {
+        Characters characters = new Characters();
+        Player chef = new Player("Chef", "chef.png", null, null, null);
+        chef.addAlias("cook");
+        characters.put(chef);
+        Player baker = new Player("Baker", "baker.png", null, null, null);
+        baker.addAlias("cook");
+        characters.put(baker);
+
+        characters.put(new Player("Chef", "chef.png", null, null, null));
+        check(characters.get(Symbols.intern("cook")) == baker, "the alias still finds the other character");
+    }
+
+    /**
+     * Fail with "message" unless "condition" holds.
+     */
+    private static void check(boolean condition, String message)
+    {
+        if(!condition) {
+            throw new AssertionError("CharactersTest: " + message);
+        }
+    }
+}
@@ -2,15 +2,22 @@
  * This class is part of the "World of Tomorrow" game.   
  *
  * This class holds information about a command that was issued by the user.
- * A command currently consists of two parts: a CommandWord and a string
- * (for example, if the command was "go south map", then the two parts
- * are GO and "south").
+ * A command consists of a CommandWord and the words that follow it.
+ * The second word is the object of the command, the third word its
+ * target (for example, if the command was "give the blue book to
+ * librarian", then the command word is GIVE, the second word "book" and
+ * the third word "librarian"). All words after the command word are
+ * also kept.
  * 
  * The way this is used is: Commands are already checked for being valid
  * command words. If the user entered an invalid command (a word that is not
  * known) then the CommandWord is UNKNOWN.
  *
  * If the command had only one word, then the second word is <null>.
+ *
+ * The second and third word are also kept as symbols (see Symbols), so
+ * rooms, items and characters can be found without hashing Strings. A
+ * word that is not a known name has the symbol -1.
  * 
  * @author Sarunas Djacenko
  * @version 2017.12.08
@@ -20,6 +27,8 @@ public class Command
 {
     private CommandWord commandWord;
     private String secondWord, thirdWord;
+    private String[] words;
+    private int secondSymbol, thirdSymbol;
 
     /**
      * Create a command object. First, second and third words must be supplied, but
@@ -30,10 +39,45 @@ public class Command
      * @param thirdWord The third word of the command. May be null.
      */
     public Command(CommandWord commandWord, String secondWord, String thirdWord)
+    {
+        this(commandWord, secondWord, thirdWord, new String[0]);
+    }
+
+    /**
+     * Create a command object which also keeps all words that followed
+     * the command word.
+     * @param commandWord The CommandWord. UNKNOWN if the command word
+     *                  was not recognised.
+     * @param secondWord The second word of the command. May be null.
+     * @param thirdWord The third word of the command. May be null.
+     * @param words All words after the command word, in lower case.
+     */
+    public Command(CommandWord commandWord, String secondWord, String thirdWord, String[] words)
+    {
+        this(commandWord, secondWord, thirdWord, words,
+             Symbols.lookup(secondWord), Symbols.lookup(thirdWord));
+    }
+
+    /**
+     * Create a command object whose second and third word have already
+     * been looked up in the symbol table (by the Parser).
+     * @param commandWord The CommandWord. UNKNOWN if the command word
+     *                  was not recognised.
+     * @param secondWord The second word of the command. May be null.
+     * @param thirdWord The third word of the command. May be null.
+     * @param words All words after the command word, in lower case.
+     * @param secondSymbol The symbol of the second word, or -1.
+     * @param thirdSymbol The symbol of the third word, or -1.
+     */
+    public Command(CommandWord commandWord, String secondWord, String thirdWord, String[] words,
+                   int secondSymbol, int thirdSymbol)
     {
         this.commandWord = commandWord;
         this.secondWord = secondWord;
         this.thirdWord = thirdWord;
+        this.words = words;
+        this.secondSymbol = secondSymbol;
+        this.thirdSymbol = thirdSymbol;
     }
 
     /**
@@ -63,6 +107,33 @@ public class Command
         return thirdWord;
     }
 
+    /**
+     * @return The symbol of the second word, or -1 if there was no second
+     * word or it is not a known name.
+     */
+    public int getSecondSymbol()
+    {
+        return secondSymbol;
+    }
+
+    /**
+     * @return The symbol of the third word, or -1 if there was no third
+     * word or it is not a known name.
+     */
+    public int getThirdSymbol()
+    {
+        return thirdSymbol;
+    }
+
+    /**
+     * @return All words after the command word (including words such as
+     * "the" and "to"). The array is empty if there were none.
+     */
+    public String[] getWords()
+    {
+        return words;
+    }
+
     /**
      * @return true if this command was not understood.
      */
@@ -0,0 +1,315 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * The journal of one game: every line of user input the game accepted,
+ * in order, in the file <name>.journal. From time to time the whole game
+ * is saved in <name>.snapshot (see Game.save), together with how far the
+ * journal had got. A game can then be made again (see Game.recover) from
+ * the last snapshot and the lines after it.
+ *
+ * Lines are not written one by one. They are added to a buffer, and one
+ * thread (shared by all journals) writes the buffers and forces them to
+ * the disk. While it is doing so, new lines collect in the next buffer,
+ * so under load many lines (of many journals) are forced at once: a
+ * group commit. sync tells when the lines so far are on the disk.
+ *
+ * Each line is written as its length, a CRC32 checksum and its UTF-8
+ * bytes. A line that was only partly written when the program stopped
+ * has a wrong checksum, and is cut off when the journal is opened again.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class CommandJournal
+{
+    private static final int HEADER = 8;    // length and checksum of a line
+    private static LinkedBlockingQueue<CommandJournal> toFlush = new LinkedBlockingQueue<>();
+    private static Thread flusher;
+
+    private Path file, snapshotFile;
+    private FileChannel channel;
+    private long size;              // bytes written and waiting, after the last good line
+    private ByteBuffer waiting, writing;
+    private CompletableFuture<Void> committed;   // completes when "waiting" is on the disk
+    private CompletableFuture<Void> inFlight;    // completes when "writing" is on the disk, or null
+    private boolean isQueued, isClosed;
+
+    /**
+     * Open the journal <name>.journal in "folder", or create it. A line
+     * at the end that was only partly written is cut off.
+     */
+    public CommandJournal(Path folder, String name) throws IOException
+    {
+        Files.createDirectories(folder);
+        file = folder.resolve(name + ".journal");
+        snapshotFile = folder.resolve(name + ".snapshot");
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                   StandardOpenOption.WRITE);
+        size = scan(null, 0);
+        channel.truncate(size);
+        channel.position(size);
+        waiting = ByteBuffer.allocate(4096);
+        writing = ByteBuffer.allocate(4096);
+        committed = new CompletableFuture<>();
+    }
+
+    /**
+     * Add a line to the journal. It is written to the disk soon after,
+     * together with the other lines added by then.
+     */
+    public synchronized void append(String line)
+    {
+        if(isClosed) {
+            throw new IllegalStateException("The journal " + file + " is closed.");
+        }
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        if(waiting.remaining() < HEADER + bytes.length) {
+            ByteBuffer larger = ByteBuffer.allocate(2 * (waiting.capacity() + HEADER + bytes.length));
+            waiting.flip();
+            larger.put(waiting);
+            waiting = larger;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        waiting.putInt(bytes.length);
+        waiting.putInt((int) crc.getValue());
+        waiting.put(bytes);
+        size += HEADER + bytes.length;
+        if(!isQueued) {
+            isQueued = true;
+            startFlusher();
+            toFlush.add(this);
+        }
+    }
+
+    /**
+     * @return A future that completes when every line added so far is on
+     * the disk (or fails if it could not be written).
+     */
+    public synchronized CompletableFuture<Void> sync()
+    {
+        if(waiting.position() > 0) {
+            return committed;
+        }
+        if(inFlight != null) {
+            return inFlight;
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * @return The position after the last line added, where the next line
+     * will start.
+     */
+    public synchronized long getPosition()
+    {
+        return size;
+    }
+
+    /**
+     * Save a snapshot of the game: "saved" (see Game.save) and the
+     * position in the journal it belongs to. The lines before that
+     * position are written first, so a snapshot never points past the end
+     * of the journal on the disk. The snapshot is written to a new file
+     * first, and then replaces the last one, so there is always one whole
+     * snapshot.
+     */
+    public void writeSnapshot(byte[] saved) throws IOException
+    {
+        sync().join();
+        ByteBuffer snapshot = ByteBuffer.allocate(8 + saved.length);
+        snapshot.putLong(getPosition());
+        snapshot.put(saved);
+        snapshot.flip();
+        Path temporary = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".new");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                 StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while(snapshot.hasRemaining()) {
+                out.write(snapshot);
+            }
+            out.force(false);
+        }
+        Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return The last snapshot: the position in the journal (8 bytes),
+     * then the saved game; or null if there is none.
+     */
+    public byte[] readSnapshot() throws IOException
+    {
+        if(!Files.exists(snapshotFile)) {
+            return null;
+        }
+        return Files.readAllBytes(snapshotFile);
+    }
+
+    /**
+     * @return The lines of the journal from "position" (the start of a
+     * line) to the end of what is on the disk.
+     */
+    public List<String> read(long position) throws IOException
+    {
+        ArrayList<String> lines = new ArrayList<>();
+        scan(lines, position);
+        return lines;
+    }
+
+    /**
+     * Write what is waiting, and close the journal.
+     */
+    public void close() throws IOException
+    {
+        synchronized(this) {
+            isClosed = true;
+        }
+        sync().join();
+        channel.close();
+    }
+
+    /**
+     * Read the lines from "position" on, as long as they are whole. The
+     * file is read in large blocks.
+     * @param lines Where to put the lines, or null to only check them.
+     * @return The position after the last whole line.
+     */
+    private long scan(List<String> lines, long position) throws IOException
+    {
+        long end = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(65536);
+        buffer.flip();
+        long bufferEnd = position;      // the position in the file after the buffer
+        CRC32 crc = new CRC32();
+        while(true) {
+            if(buffer.remaining() < HEADER) {
+                bufferEnd = fill(buffer, bufferEnd);
+                if(buffer.remaining() < HEADER) {
+                    break;
+                }
+            }
+            int length = buffer.getInt(buffer.position());
+            if(length < 0 || position + HEADER + length > end) {
+                break;
+            }
+            if(buffer.remaining() < HEADER + length) {
+                if(buffer.capacity() < HEADER + length) {
+                    ByteBuffer larger = ByteBuffer.allocate(2 * (HEADER + length));
+                    larger.put(buffer);
+                    larger.flip();
+                    buffer = larger;
+                }
+                bufferEnd = fill(buffer, bufferEnd);
+            }
+            int start = buffer.position() + HEADER;
+            crc.reset();
+            crc.update(buffer.array(), start, length);
+            if((int) crc.getValue() != buffer.getInt(buffer.position() + 4)) {
+                break;
+            }
+            if(lines != null) {
+                lines.add(new String(buffer.array(), start, length, StandardCharsets.UTF_8));
+            }
+            buffer.position(start + length);
+            position += HEADER + length;
+        }
+        return position;
+    }
+
+    /**
+     * Keep the bytes left in "buffer", and read as many more as fit.
+     * @param position The position in the file after the bytes in the buffer.
+     * @return The position in the file after the bytes now in the buffer.
+     */
+    private long fill(ByteBuffer buffer, long position) throws IOException
+    {
+        buffer.compact();
+        while(buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if(read <= 0) {
+                break;
+            }
+            position += read;
+        }
+        buffer.flip();
+        return position;
+    }
+
+    /**
+     * Write the lines waiting, and force them to the disk. Only called by
+     * the flusher thread, so only one flush runs at a time.
+     */
+    private void flush()
+    {
+        CompletableFuture<Void> done;
+        synchronized(this) {
+            ByteBuffer full = waiting;
+            waiting = writing;
+            writing = full;
+            done = committed;
+            committed = new CompletableFuture<>();
+            inFlight = done;
+            isQueued = false;
+        }
+        writing.flip();
+        try {
+            while(writing.hasRemaining()) {
+                channel.write(writing);
+            }
+            channel.force(false);
+            done.complete(null);
+        } catch(IOException e) {
+            done.completeExceptionally(new UncheckedIOException("Cannot write " + file, e));
+        }
+        writing.clear();
+        synchronized(this) {
+            if(inFlight == done) {
+                inFlight = null;
+            }
+        }
+    }
+
+    /**
+     * Start the thread that flushes the journals, unless it is running.
+     */
+    private static synchronized void startFlusher()
+    {
+        if(flusher != null) {
+            return;
+        }
+        flusher = new Thread("journal flusher") {
+            public void run() {
+                ArrayList<CommandJournal> journals = new ArrayList<>();
+                while(true) {
+                    try {
+                        journals.add(toFlush.take());
+                    } catch(InterruptedException e) {
+                        return;
+                    }
+                    toFlush.drainTo(journals);
+                    for(CommandJournal journal : journals) {
+                        journal.flush();
+                    }
+                    journals.clear();
+                }
+            }
+        };
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+}
@@ -10,7 +10,8 @@ public enum CommandWord
     // A value for each command word along with its
     // corresponding user interface string.
     UNKNOWN("?"), GO("go"), BACK("back"), LOOK("look"), TALK("talk"), BAG("bag"), TAKE("take"),
-    GIVE("give"), DROP("drop"), QUIT("quit"), HELP("help"), FULLSCREEN("fullscreen"), USE("use");
+    GIVE("give"), DROP("drop"), QUIT("quit"), HELP("help"), FULLSCREEN("fullscreen"), USE("use"),
+    GOTO("goto"), SAVE("save"), LOAD("load"), UNDO("undo");
     
     // The command string.
     private String commandString;
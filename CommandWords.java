@@ -1,10 +1,13 @@
-import java.util.HashMap;
-
 /**
  * This class is part of the "World of Tomorrow" game.
  * 
  * This class holds an enumeration of all command words known to the game.
  * It is used to recognise commands as they are typed in.
+ * Command words may be shortened ("tak" for "take") as long as only one
+ * command word starts that way, and small typing mistakes ("tlak") are
+ * forgiven. Commands that cannot be taken back (quit, save and load) are
+ * only recognised when typed in full or shortened, never from a mistake,
+ * so "quiz" is not taken for "quit".
  *
  * @author Sarunas Djacenko
  * @version 2017.12.08
@@ -12,16 +15,16 @@ import java.util.HashMap;
 
 public class CommandWords
 {
-    // A mapping between a command word and the CommandWord
+    // A trie mapping a command word to the CommandWord
     // associated with it.
-    private HashMap<String, CommandWord> validCommands;
+    private WordTrie<CommandWord> validCommands;
 
     /**
      * Constructor - initialise the command words.
      */
     public CommandWords()
     {
-        validCommands = new HashMap<>();
+        validCommands = new WordTrie<>();
         for(CommandWord command : CommandWord.values()) {
             if(command != CommandWord.UNKNOWN) {
                 validCommands.put(command.toString(), command);
@@ -32,12 +35,21 @@ public class CommandWords
     /**
      * Find the CommandWord associated with a command word.
      * @param commandWord The word to look up (as a string).
-     * @return The CommandWord correspondng to commandWord, or UNKNOWN
-     *         if it is not a valid command word.
+     * @return The CommandWord correspondng to commandWord (or to the only
+     *         command word it can be short for, or a misspelling of),
+     *         or UNKNOWN if it is not a valid command word.
      */
     public CommandWord getCommandWord(String commandWord)
     {
-        CommandWord command = validCommands.get(commandWord);
+        CommandWord command = null;
+        if(commandWord != null) {
+            command = validCommands.resolve(commandWord);
+        }
+        if(command != null && !canBeMisspelt(command)
+           && !command.toString().startsWith(commandWord)) {
+            // a misspelling, of a command that cannot be taken back.
+            command = null;
+        }
         if(command != null) {
             return command;
         }
@@ -46,13 +58,24 @@ public class CommandWords
         }
     }
     
+    /**
+     * @return true if a misspelling of "command" may be taken for it;
+     * false for quit, save and load, which cannot be taken back.
+     */
+    private static boolean canBeMisspelt(CommandWord command)
+    {
+        return command != CommandWord.QUIT && command != CommandWord.SAVE && command != CommandWord.LOAD;
+    }
+
     /**
      * Returns string of all valid command words.
      */
     public String getCommandList() {
         String commandList = "";
-        for(String command : validCommands.keySet()) {
-            commandList += command + " ";
+        for(CommandWord command : CommandWord.values()) {
+            if(command != CommandWord.UNKNOWN) {
+                commandList += command + " ";
+            }
         }
         return commandList;
     }
@@ -63,6 +86,6 @@ public class CommandWords
      */
     public boolean isCommand(String aString)
     {
-        return validCommands.containsKey(aString);
+        return validCommands.get(aString) != null;
     }
 }
@@ -0,0 +1,64 @@
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * Tests of CommandWords. There is no test framework in the project: run
+ * the main method, which prints "CommandWordsTest: OK", or fails with the
+ * first check that does not hold.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class CommandWordsTest
+{
+    public static void main(String args[]) {
+        misspeltCommandsAreForgiven();
+        misspeltQuitSaveAndLoadAreUnknown();
+        shortenedQuitSaveAndLoadAreKnown();
+        System.out.println("CommandWordsTest: OK");
+    }
+
+    /**
+     * A small typing mistake in a command that can be taken back is
+     * forgiven.
+     */
+    private static void misspeltCommandsAreForgiven()
+    {
+        CommandWords words = new CommandWords();
+        check(words.getCommandWord("tlak") == CommandWord.TALK, "tlak is talk");
+        check(words.getCommandWord("tkae") == CommandWord.TAKE, "tkae is take");
+    }
+
+    /**
+     * Words that are near quit, save or load are not taken for them, as
+     * those commands cannot be taken back.
+     */
+    private static void misspeltQuitSaveAndLoadAreUnknown()
+    {
+        CommandWords words = new CommandWords();
+        for(String word : new String[] {"quiz", "suit", "quite", "quiet", "quest", "lead", "loan", "sage"}) {
+            check(words.getCommandWord(word) == CommandWord.UNKNOWN, word + " is unknown");
+        }
+    }
+
+    /**
+     * Quit, save and load are still known in full, or shortened.
+     */
+    private static void shortenedQuitSaveAndLoadAreKnown()
+    {
+        CommandWords words = new CommandWords();
+        check(words.getCommandWord("quit") == CommandWord.QUIT, "quit is quit");
+        check(words.getCommandWord("qu") == CommandWord.QUIT, "qu is quit");
+        check(words.getCommandWord("sav") == CommandWord.SAVE, "sav is save");
+        check(words.getCommandWord("loa") == CommandWord.LOAD, "loa is load");
+    }
+
+    /**
+     * Fail with "message" unless "condition" holds.
+     */
+    private static void check(boolean condition, String message)
+    {
+        if(!condition) {
+            throw new AssertionError("CommandWordsTest: " + message);
+        }
+    }
+}
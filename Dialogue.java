@@ -0,0 +1,150 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * What a character says and does when the player talks to it, read from
+ * a "dialogue" definition of a world file (see WorldFile.getDialogue).
+ * A dialogue is a small state machine. Each character is in one of its
+ * states (a number, 0 at the start). When the player talks to it, the
+ * input is whether it still wants an item (WANTING) or not (GIVEN); the
+ * state and the input give the next state and the effects to carry out,
+ * such as saying something or handing over an item (see Effects).
+ *
+ * The transitions are compiled into int arrays by state and input, and
+ * the effects of all transitions are kept one after another, as in
+ * RoomGraph. Talking is then a lookup in those arrays, however many
+ * characters and dialogues the world has. A dialogue is made once per
+ * world file, does not change, and is shared by all games and characters
+ * using it.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class Dialogue
+{
+    // inputs
+    public static final int WANTING = 0, GIVEN = 1;
+    private static final int INPUTS = 2;
+
+    private String id;
+    private String[] states;
+    private int[] next;             // state * INPUTS + input -> next state, or -1
+    private int[] firstEffect;      // effects of that transition: firstEffect[t] .. endEffect[t]
+    private int[] endEffect;
+    private Effects effects;
+
+    /**
+     * Compile the dialogue with the id "id" from the lines of its
+     * definition.
+     * @throws IllegalArgumentException if the dialogue is not right.
+     */
+    public Dialogue(WorldFile file, String id, List<String[]> lines)
+    {
+        this.id = id;
+        String owner = "The dialogue " + id;
+        HashMap<String, Integer> stateIndexes = new HashMap<>();
+        ArrayList<String> stateNames = new ArrayList<>();
+
+        // first find the states, so the tables can be made.
+        for(String[] line : lines) {
+            if(line[0].equals("when")) {
+                if(line.length < 4) {
+                    throw new IllegalArgumentException(owner + " has a line that is too short: "
+                        + String.join(" ", line) + ".");
+                }
+                for(int i : new int[] {1, 3}) {
+                    if(!stateIndexes.containsKey(line[i])) {
+                        stateIndexes.put(line[i], stateNames.size());
+                        stateNames.add(line[i]);
+                    }
+                }
+            }
+        }
+        states = stateNames.toArray(new String[0]);
+        next = new int[states.length * INPUTS];
+        firstEffect = new int[states.length * INPUTS];
+        endEffect = new int[states.length * INPUTS];
+        Arrays.fill(next, -1);
+
+        effects = new Effects(file);
+        int transition = -1;
+        for(int l = 1; l < lines.size(); l++) {
+            String[] line = lines.get(l);
+            if(line[0].equals("when")) {
+                int input = line[2].equals("wanting") ? WANTING : line[2].equals("given") ? GIVEN : -1;
+                if(input < 0) {
+                    throw new IllegalArgumentException(owner + " has the input " + line[2]
+                        + "; it can be wanting or given.");
+                }
+                transition = stateIndexes.get(line[1]) * INPUTS + input;
+                if(next[transition] >= 0) {
+                    throw new IllegalArgumentException(owner + " has two ways on from " + line[1]
+                        + " when " + line[2] + ".");
+                }
+                next[transition] = stateIndexes.get(line[3]);
+                firstEffect[transition] = effects.size();
+                endEffect[transition] = effects.size();
+                continue;
+            }
+            if(transition < 0) {
+                throw new IllegalArgumentException(owner + " has " + line[0] + " before the first \"when\".");
+            }
+            effects.add(line, owner);
+            endEffect[transition] = effects.size();
+        }
+    }
+
+    /**
+     * @return The id of the dialogue.
+     */
+    public String getId()
+    {
+        return id;
+    }
+
+    /**
+     * @return The name of state number "state".
+     */
+    public String getStateName(int state)
+    {
+        return states[state];
+    }
+
+    /**
+     * @return The state after talking in "state" with "input" (WANTING or
+     * GIVEN), or -1 if the character has nothing to say then.
+     */
+    public int getNext(int state, int input)
+    {
+        return next[state * INPUTS + input];
+    }
+
+    /**
+     * @return The first effect of talking in "state" with "input".
+     */
+    public int getFirstEffect(int state, int input)
+    {
+        return firstEffect[state * INPUTS + input];
+    }
+
+    /**
+     * @return The effect after the last effect of talking in "state"
+     * with "input".
+     */
+    public int getEndEffect(int state, int input)
+    {
+        return endEffect[state * INPUTS + input];
+    }
+
+    /**
+     * @return The effects of all transitions.
+     */
+    public Effects getEffects()
+    {
+        return effects;
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * The usual directions of an exit. Each direction knows its name, the
+ * name shown in the list of exits, and its symbol (see Symbols). Other
+ * exits, such as "hole" or "portal", are not directions; rooms keep them
+ * separately.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public enum Direction
+{
+    NORTH("north"), EAST("east"), SOUTH("south"), WEST("west"),
+    UPSTAIRS("upstairs"), DOWNSTAIRS("downstairs");
+
+    private static final Direction[] VALUES = values();
+    private static final int[] ORDINALS;   // symbol -> ordinal + 1, or 0
+
+    static {
+        int maxSymbol = 0;
+        for(Direction direction : VALUES) {
+            maxSymbol = Math.max(maxSymbol, direction.symbol);
+        }
+        ORDINALS = new int[maxSymbol + 1];
+        for(Direction direction : VALUES) {
+            ORDINALS[direction.symbol] = direction.ordinal() + 1;
+        }
+    }
+
+    private String name, label;
+    private int symbol;
+
+    /**
+     * Initialise with the name of the direction.
+     */
+    Direction(String name)
+    {
+        this.name = name;
+        label = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        symbol = Symbols.intern(name);
+    }
+
+    /**
+     * @return The direction with the symbol "symbol", or null if the
+     * symbol is not the name of a direction.
+     */
+    public static Direction fromSymbol(int symbol)
+    {
+        if(symbol < 0 || symbol >= ORDINALS.length || ORDINALS[symbol] == 0) {
+            return null;
+        }
+        return VALUES[ORDINALS[symbol] - 1];
+    }
+
+    /**
+     * @return The symbol of the name of the direction.
+     */
+    public int getSymbol()
+    {
+        return symbol;
+    }
+
+    /**
+     * @return The name shown in the list of exits, such as "North".
+     */
+    public String getLabel()
+    {
+        return label;
+    }
+
+    /**
+     * @return The name of the direction, in lower case.
+     */
+    public String toString()
+    {
+        return name;
+    }
+}
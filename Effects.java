@@ -0,0 +1,247 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * A list of effects read from a world file: what happens when a
+ * character is talked to (see Dialogue) or an item is used or given
+ * (see RuleTable). Each effect is one line, such as
+ *     say "{npc}: Thank you!"
+ *     exit physlab portal portalroom
+ * and is compiled when the world file is read: its kind is a number,
+ * its words are checked against the world, and a text is split around
+ * its slots. The effects of one dialogue or rule table are kept one
+ * after another; a transition or rule is a range of them. Game carries
+ * them out (see Game.carryOut).
+ *
+ * The texts of "say" are templates: {npc}, {player}, {item} (the item
+ * used, given or last handed over) and {target} are filled in, and \n
+ * starts a new line.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class Effects
+{
+    // kinds of effects
+    public static final int SAY = 0, HAND = 1, HAND_BACK = 2, RECEIVED = 3, USABLE = 4, USE_ON = 5,
+                            SET = 6, MOVE = 7, EXIT = 8;
+    private static final List<String> KINDS = Arrays.asList(
+        "say", "hand", "handback", "received", "usable", "useon", "set", "move", "exit");
+
+    // the parts of a text that are filled in.
+    public static final int NPC = 0, PLAYER = 1, ITEM = 2, TARGET = 3;
+    private static final String[] SLOTS = {"{npc}", "{player}", "{item}", "{target}"};
+
+    // places an item can be moved to, other than a room.
+    public static final String NOWHERE = "nowhere", BAG = "bag", HERE = "here", CHARACTER = "npc";
+
+    private WorldFile file;
+    private List<String> flagNames, directions;
+    private int size;
+    private int[] kinds;
+    private String[][] words;       // the words of each effect after its kind
+    private int[] flags;            // the flag of each effect (SET), or -1
+    private String[][] textParts;   // the text of each effect (SAY): the parts between the slots,
+    private int[][] textSlots;      // and the slots
+
+    /**
+     * Create an empty list for effects in the world of "file".
+     */
+    public Effects(WorldFile file)
+    {
+        this.file = file;
+        flagNames = Arrays.asList(file.getHeaderWords("flags"));
+        directions = Arrays.asList(file.getHeaderWords("directions"));
+        kinds = new int[8];
+        words = new String[8][];
+        flags = new int[8];
+        textParts = new String[8][];
+        textSlots = new int[8][];
+    }
+
+    /**
+     * Compile an effect, and add it at the end of the list.
+     * @param owner What the effect belongs to, for the message of an
+     * error, such as "The dialogue banker".
+     * @throws IllegalArgumentException if the line is not a right effect.
+     */
+    public void add(String[] line, String owner)
+    {
+        int kind = KINDS.indexOf(line[0]);
+        if(kind < 0) {
+            throw new IllegalArgumentException(owner + " has an unknown line: " + line[0] + ".");
+        }
+        if(size == kinds.length) {
+            int length = 2 * size;
+            kinds = Arrays.copyOf(kinds, length);
+            words = Arrays.copyOf(words, length);
+            flags = Arrays.copyOf(flags, length);
+            textParts = Arrays.copyOf(textParts, length);
+            textSlots = Arrays.copyOf(textSlots, length);
+        }
+        int effect = size;
+        kinds[effect] = kind;
+        words[effect] = Arrays.copyOfRange(line, 1, line.length);
+        flags[effect] = -1;
+        switch (kind) {
+            case SAY:
+                check(line, 2, owner);
+                compileText(effect, line[1]);
+                break;
+            case HAND:
+                if(line.length > 1) {
+                    checkItem(line[1], owner);
+                }
+                break;
+            case USABLE:
+            case USE_ON:
+                check(line, 2, owner);
+                checkItem(line[1], owner);
+                break;
+            case SET:
+                check(line, 2, owner);
+                flags[effect] = flagNames.indexOf(line[1]);
+                if(flags[effect] < 0) {
+                    throw new IllegalArgumentException(owner + " sets the flag " + line[1]
+                        + ", which is not in the header \"flags\".");
+                }
+                break;
+            case MOVE:
+                check(line, 3, owner);
+                checkItem(line[1], owner);
+                if(!line[2].equals(NOWHERE) && !line[2].equals(BAG) && !line[2].equals(HERE)
+                   && !line[2].equals(CHARACTER)) {
+                    checkRoom(line[2], owner);
+                }
+                break;
+            case EXIT:
+                check(line, 4, owner);
+                checkRoom(line[1], owner);
+                checkRoom(line[3], owner);
+                if(!directions.contains(line[2])) {
+                    throw new IllegalArgumentException(owner + " adds an exit " + line[2]
+                        + ", which is not in the header \"directions\".");
+                }
+                break;
+        }
+        size++;
+    }
+
+    /**
+     * @return The number of effects in the list.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return The kind of effect number "effect" (SAY, HAND, ...).
+     */
+    public int getKind(int effect)
+    {
+        return kinds[effect];
+    }
+
+    /**
+     * @return Word number "index" of an effect after its kind (for
+     * example the item of USABLE, or the room of MOVE), or null if the
+     * effect has no such word.
+     */
+    public String getWord(int effect, int index)
+    {
+        return index < words[effect].length ? words[effect][index] : null;
+    }
+
+    /**
+     * @return The number of the flag (in the header "flags") set by an
+     * effect (SET).
+     */
+    public int getFlag(int effect)
+    {
+        return flags[effect];
+    }
+
+    /**
+     * @return The text of an effect (SAY), with its slots filled in.
+     * @param values The values of the slots, by NPC, PLAYER, ITEM and
+     * TARGET. Missing values are left out.
+     */
+    public String getText(int effect, String... values)
+    {
+        String[] parts = textParts[effect];
+        int[] slots = textSlots[effect];
+        StringBuilder text = new StringBuilder(parts[0]);
+        for(int i = 0; i < slots.length; i++) {
+            String value = slots[i] < values.length ? values[slots[i]] : null;
+            text.append(value != null ? value : "").append(parts[i + 1]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Split the text of effect "effect" into the parts between its slots.
+     */
+    private void compileText(int effect, String text)
+    {
+        text = text.replace("\\n", "\n");
+        ArrayList<String> parts = new ArrayList<>();
+        ArrayList<Integer> slots = new ArrayList<>();
+        int start = 0;
+        int i = text.indexOf('{');
+        while(i >= 0) {
+            int slot = -1;
+            for(int s = 0; s < SLOTS.length; s++) {
+                if(text.startsWith(SLOTS[s], i)) {
+                    slot = s;
+                }
+            }
+            if(slot >= 0) {
+                parts.add(text.substring(start, i));
+                slots.add(slot);
+                start = i + SLOTS[slot].length();
+            }
+            i = text.indexOf('{', i + 1);
+        }
+        parts.add(text.substring(start));
+        textParts[effect] = parts.toArray(new String[0]);
+        textSlots[effect] = new int[slots.size()];
+        for(int s = 0; s < slots.size(); s++) {
+            textSlots[effect][s] = slots.get(s);
+        }
+    }
+
+    /**
+     * Check that the world file has an item called "item".
+     */
+    private void checkItem(String item, String owner)
+    {
+        if(file.getItemIndex(item) < 0) {
+            throw new IllegalArgumentException(owner + " names the item " + item + ", which is not in the world.");
+        }
+    }
+
+    /**
+     * Check that the world file has a room called "room".
+     */
+    private void checkRoom(String room, String owner)
+    {
+        if(file.getRoomIndex(room) < 0) {
+            throw new IllegalArgumentException(owner + " names the room " + room + ", which is not in the world.");
+        }
+    }
+
+    /**
+     * Check that a line has at least "count" words.
+     */
+    private static void check(String[] line, int count, String owner)
+    {
+        if(line.length < count) {
+            throw new IllegalArgumentException(owner + " has a line that is too short: "
+                + String.join(" ", line) + ".");
+        }
+    }
+}
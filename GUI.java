@@ -1,59 +1,117 @@
 import javax.swing.*;
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.event.*;
-import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
-import java.io.PrintStream;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.BiConsumer;
 
 /**
  * This class is for the GUI element of the "World of Tomorrow" game.
  * The frame is created, and later updated.
+ * The GUI is a client of the Game: it passes on what the user has
+ * entered, and the Game tells it when the frame needs to change.
+ *
+ * The game runs on a thread of its own (the only thread that changes
+ * it), fed by the queue of a GameSession, so typing never waits for a
+ * command. What the game prints, and the rooms it shows (as RoomViews),
+ * are posted back to the event dispatch thread. Images are read in the
+ * background as well (see AssetPrefetcher); until then the room shows
+ * placeholders.
  *
  * @author Sarunas Djacenko
  * @version 2017.12.08
  */
 public class GUI
 {
+    private static final int RESIZE_DELAY = 150;   // milliseconds without resizing before the room is scaled
+    private static final int NEIGHBORS = 4;         // most rooms next to a room, for the size of the cache
+    private static final int SPRITES_PER_ROOM = 3;  // most sprites in a room: the player and two characters
+    private static final String WELCOME_FILE = "images/other/welcome.png";
+
     private JFrame frame;
     private BorderLayout layout;
-    private JLayeredPane layers;
-    
-    private String roomFileName, characterFileNames;
+    private RoomCanvas canvas;
     
-    private JLabel label[];
-    private JPanel container, containerImage, containerText;
+    private JPanel container, containerText;
     private JTextField jtfInput;
     private JTextArea jtaOutput;
-    private ImageIcon icon[];
-    private BufferedImage picture[];
+    private SpriteCache sprites;
+    private AssetPrefetcher prefetcher;
+    private Timer resizeTimer;
     
     private Game game;
+    private GameSession session;
+    private int commandsWaiting;            // entered, and not yet finished by the game
+    private ArrayDeque<String> echoes;      // entered, and not yet shown
     private Rectangle previousBounds;
     private Font defaultFont;
-    private boolean fullscreenMode, isCreated;
-    private int heightRoomDefault, heightCharDefault, heightRoom, heightChar, heightMax, i, fileCount, fontSize, fontSizeDefault;
+    private int heightRoomDefault, heightCharDefault, heightRoom, heightChar, heightMax, fontSize, fontSizeDefault;
     private double resMultiplier;
     
-    private Room currentRoom;
+    private RoomView currentView;
 
     /**
-     * Calls a method to create the frame.
+     * Attaches the GUI to the game, and calls a method to create the
+     * frame. The game is started on its own thread.
+     * Only to be called on the event dispatch thread.
      */
     public GUI(Game game) {
         this.game = game;
+        game.setGUI(this);
         makeFrame();
     }
     
     /**
-     * Calls a method to update the game, based on what the user has entered.
+     * Queues what the user has entered for the game. The input is shown
+     * at once, unless commands entered before it have not finished yet:
+     * it is then shown after their output (see commandFinished).
      */
     private void updateGame(String text)
     {
-        game.updateGameState(text);
+        if(commandsWaiting == 0) {
+            echo(text);
+        } else {
+            echoes.add(text);
+        }
+        commandsWaiting++;
+        session.submit(text).whenComplete(new BiConsumer<String, Throwable>() {
+                            public void accept(String output, Throwable failure) {
+                                if(failure != null) {
+                                    failure.printStackTrace();
+                                }
+                                //the output itself was posted before this.
+                                SwingUtilities.invokeLater(new Runnable() {
+                                    public void run() {
+                                        commandFinished();
+                                    }
+                                });
+                            }
+                        });
+    }
+    
+    /**
+     * Called when the game has finished a command: shows the next input
+     * that is waiting, if any.
+     */
+    private void commandFinished()
+    {
+        commandsWaiting--;
+        if(!echoes.isEmpty()) {
+            echo(echoes.poll());
+        }
+    }
+    
+    /**
+     * Shows what the user has entered, and scrolls to the bottom.
+     */
+    private void echo(String text)
+    {
+        jtaOutput.append("\n" + text + "\n\n");
+        int len = jtaOutput.getDocument().getLength();
+        jtaOutput.setCaretPosition(len);
     }
     
     /**
@@ -61,22 +119,6 @@ public class GUI
      * Default aspect ratio (for windowed app) is 16:9.
      */
     private void makeFrame() {
-        //At any time, there is 1 room.
-        //So total characters + 1 room = maximum number of images.
-        File directoryChar = new File("images/characters");
-        fileCount = directoryChar.list().length;
-        
-        picture = new BufferedImage[fileCount + 1];
-        icon = new ImageIcon[fileCount + 1];
-        label = new JLabel[fileCount + 1];
-        
-        try {
-            picture[1] = ImageIO.read(new File("images/characters/player.png"));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        label[1] = new JLabel();
-        
         //Define constants (not overwritten) and initial values.
         heightRoomDefault = 540;
         heightCharDefault = 100;
@@ -89,12 +131,28 @@ public class GUI
         
         resMultiplier = ((1.0*heightMax)/(1.0*heightRoomDefault));
         
+        //Images of rooms and characters are read and scaled only once per size.
+        //If AssetPacker has been run, they are taken from the packed bundle.
+        //The cache holds the room and the rooms next to it, with their
+        //characters, in windowed and in fullscreen mode, so toggling back and
+        //forth reads and scales nothing again. Pyramids get as many bytes.
+        long roomBytes = 4L * heightRoomDefault * heightRoomDefault + 4L * heightMax * heightMax;
+        long charBytes = (long) (4L * heightCharDefault * heightCharDefault * (1 + resMultiplier * resMultiplier));
+        long cacheBytes = (NEIGHBORS + 1) * (roomBytes + SPRITES_PER_ROOM * charBytes);
+        sprites = new SpriteCache(cacheBytes, cacheBytes);
+        prefetcher = new AssetPrefetcher(sprites);
+        try {
+            sprites.setBundle(new AssetBundle(AssetPacker.BUNDLE_FILE));
+        } catch (IOException e) {
+            //no bundle, the PNG files are used.
+        }
+        
         defaultFont = new Font("Courier New", Font.ITALIC, fontSizeDefault);
         
         //Create and set up the window.
         frame = new JFrame("World of Tomorrow");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        frame.setResizable(false);
+        frame.setResizable(true);
         
         //Add output stream
         jtaOutput = new JTextArea();
@@ -103,9 +161,18 @@ public class GUI
         jtaOutput.setWrapStyleWord(true);
         jtaOutput.setBackground(new Color(238,238,238));
         jtaOutput.setEditable(false);
-        PrintStream out = new PrintStream(new TextOutput(jtaOutput));
-        System.setOut(out);
-        System.setErr(out);
+        game.getOutput().setTarget(new TextOutput(jtaOutput));
+        
+        //Start the game on its own thread.
+        echoes = new ArrayDeque<>();
+        Executor gameThread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                            public Thread newThread(Runnable runnable) {
+                                Thread thread = new Thread(runnable, "game");
+                                thread.setDaemon(true);
+                                return thread;
+                            }
+                        });
+        session = new GameSession(0, gameThread, game);
         
         JScrollPane scrollPane = new JScrollPane(jtaOutput);
         //scrollbar disabled. If the user wants to see room description, they can type "look".
@@ -120,25 +187,17 @@ public class GUI
                             public void actionPerformed(ActionEvent e) {
                                 String text = jtfInput.getText();
                                 jtfInput.setText("");
-                                jtaOutput.append("\n" + text + "\n\n");
-                                
-                                //Scrolls to bottom each time there is input.
-                                int len = jtaOutput.getDocument().getLength();
-                                jtaOutput.setCaretPosition(len);
-                                
                                 updateGame(text);
                             }
                         });
         
                         
         //Set up GUI layout.
-        //Create Image container.
-        containerImage = new JPanel();
-        layers = new JLayeredPane();
-        //Add images.
-        loadFiles(null);
-        containerImage.setLayout(null);
-        containerImage.add(layers);
+        //Create the picture of the room, showing the welcome screen at first.
+        canvas = new RoomCanvas(sprites, heightRoom, heightChar);
+        show(new RoomView(WELCOME_FILE));
+        //the Toolkit reads the icon in the background.
+        frame.setIconImage(Toolkit.getDefaultToolkit().getImage(WELCOME_FILE));
         
         //create Text container.
         containerText = new JPanel(new BorderLayout());
@@ -149,9 +208,23 @@ public class GUI
         container = new JPanel();
         layout = new BorderLayout();
         container.setLayout(layout);
-        container.add(containerImage, BorderLayout.WEST);
+        container.add(canvas, BorderLayout.WEST);
         container.add(containerText, BorderLayout.CENTER);
         
+        //While the window is being resized, the room is stretched. Only when
+        //it has not changed for RESIZE_DELAY is the room scaled to the new size.
+        resizeTimer = new Timer(RESIZE_DELAY, new ActionListener() {
+                            public void actionPerformed(ActionEvent e) {
+                                fitToWindow();
+                            }
+                        });
+        resizeTimer.setRepeats(false);
+        container.addComponentListener(new ComponentAdapter() {
+                            public void componentResized(ComponentEvent e) {
+                                resizeTimer.restart();
+                            }
+                        });
+        
         //Display the window in a 16:9 aspect ratio.
         frame.getContentPane().setPreferredSize(new Dimension((int) ((16.0/9.0)*heightRoomDefault), heightRoomDefault));
         frame.getContentPane().add(container);
@@ -160,145 +233,153 @@ public class GUI
         jtfInput.requestFocusInWindow();
     }
     
-    private void loadFiles(Room currentRoom)
+    /**
+     * Show a room, and start reading the images of the rooms next to it
+     * in the background.
+     */
+    private void show(RoomView view)
     {
-        if(isCreated == false) {
-            isCreated = true;
-            try {
-                containerImage.setPreferredSize(new Dimension(heightRoom, heightRoom));
-                layers.removeAll();
-                layers.setBounds(0,0,heightRoom,heightRoom);
-                
-                picture[0] = ImageIO.read(new File("images/other/welcome.png"));
-                icon[0] = new ImageIcon(picture[0].getScaledInstance(heightRoom, heightRoom, Image.SCALE_SMOOTH));
-                label[0] = new JLabel(icon[0]);
-                frame.setIconImage(icon[0].getImage());
-                
-                label[0].setBounds(0, 0, heightRoom, heightRoom);
-                layers.add(label[0], new Integer(0));
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        } else {
-            try {
-                roomFileName = currentRoom.getFileName();
-                characterFileNames = currentRoom.getCharacterFileNames();
-            
-                containerImage.setPreferredSize(new Dimension(heightRoom, heightRoom));
-                layers.removeAll();
-                layers.setBounds(0,0,heightRoom,heightRoom);
-            
-                picture[0] = ImageIO.read(new File(roomFileName));
-                icon[0] = new ImageIcon(picture[0].getScaledInstance(heightRoom, heightRoom, Image.SCALE_SMOOTH));
-                label[0] = new JLabel(icon[0]);
-            
-                label[0].setBounds(0, 0, heightRoom, heightRoom);
-                layers.add(label[0], new Integer(0));
-            
-                
-                String[] lines = characterFileNames.split(" ");
-                int nCharacters = lines.length + 1; // characters in room + player
-                double location = ((heightRoom - 1.0*heightChar*(nCharacters + (nCharacters - 1.0)/nCharacters))/2.0);
-                
-                if(currentRoom.getShortDescription() != "") {
-                    icon[1] = new ImageIcon(picture[1].getScaledInstance(heightChar, heightChar, Image.SCALE_SMOOTH));
-                    label[1].setIcon(icon[1]);
-
-                    label[1].setBounds((int) (location), (int) ((heightRoom - heightChar)/2.0), icon[1].getIconWidth(), icon[1].getIconHeight());
-                    layers.add(label[1], new Integer(1));
-                }
-                
-                i = 1;
-                for (String fileName: lines) {
-                    i++;
-                    if (fileName != "") {
-                        picture[i] = ImageIO.read(new File(fileName));
-                
-                        label[i] = new JLabel();
-                        icon[i] = new ImageIcon(picture[i].getScaledInstance(heightChar, heightChar, Image.SCALE_SMOOTH));
-                        label[i].setIcon(icon[i]);
-                
-                        label[i].setBounds((int) (location + ((i-1.0)*heightChar*(1.0 + 1.0/nCharacters))), (int) ((heightRoom - heightChar)/2.0), icon[i].getIconWidth(), icon[i].getIconHeight());
-                        layers.add(label[i], new Integer(i));
-                    }
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        currentView = view;
+        showRoom();
+        prefetcher.prefetch(view, heightRoom, heightChar);
+    }
+    
+    /**
+     * Show the current room at the current size. Images that are not read
+     * yet are read in the background, and the room is then shown again.
+     */
+    private void showRoom()
+    {
+        canvas.setSizes(heightRoom, heightChar);
+        if(!canvas.showRoom(currentView)) {
+            final RoomView view = currentView;
+            prefetcher.load(view, heightRoom, heightChar, new Runnable() {
+                            public void run() {
+                                if(view == currentView) {
+                                    canvas.showRoom(view);
+                                }
+                            }
+                        });
         }
-    }    
+    }
+    
+    /**
+     * Scale the room, the characters and the text so the room is as high
+     * as the window, if it is not already.
+     */
+    private void fitToWindow()
+    {
+        int height = Math.max(container.getHeight(), heightCharDefault);
+        if(height != heightRoom) {
+            setScale(height);
+        }
+    }
+    
+    /**
+     * Scale the room to "height", and the characters and the text with it.
+     * The images at the new size are made in the background (from the
+     * pyramids of the SpriteCache); the room is then shown again.
+     */
+    private void setScale(int height)
+    {
+        heightRoom = height;
+        heightChar = (int) (height * (1.0*heightCharDefault) / heightRoomDefault);
+        fontSize = (int) (height * (1.0*fontSizeDefault) / heightRoomDefault);
+        jtaOutput.setFont(defaultFont.deriveFont((float) fontSize));
+        jtfInput.setFont(defaultFont.deriveFont((float) fontSize));
+        
+        final RoomView view = currentView;
+        prefetcher.load(view, heightRoom, heightChar, new Runnable() {
+                            public void run() {
+                                //the player may have moved meanwhile.
+                                if(view == currentView) {
+                                    show(view);
+                                }
+                            }
+                        });
+    }
     
     /**
      * Updates the image in the frame, based on the room that the player goes to.
+     * The images of the rooms next to it are then read in the background.
+     * Called on the thread of the game: the room is shown on the event
+     * dispatch thread, as it is now.
      */
     public void updateFrame(Room currentRoom)
     {
-        this.currentRoom = currentRoom;
-        loadFiles(currentRoom);
+        final RoomView view = new RoomView(currentRoom);
+        SwingUtilities.invokeLater(new Runnable() {
+                            public void run() {
+                                show(view);
+                            }
+                        });
+    }
+    
+    /**
+     * Toggle between Fullscreen and Windowed mode, on the event dispatch
+     * thread. Called on the thread of the game.
+     * @return The new mode: true for fullscreen.
+     */
+    public boolean toggleFullscreen(final boolean fullscreen)
+    {
+        SwingUtilities.invokeLater(new Runnable() {
+                            public void run() {
+                                setFullscreen(!fullscreen);
+                            }
+                        });
+        return !fullscreen;
     }
     
     /**
-     * Toggle between Fullscreen and Windowed mode.
+     * Switch to Fullscreen or Windowed mode.
      * 
      * Bottom of GUI is cut off on Linux due to Linux limitations of
      * not allowing a true fullscreen (hiding taskbar and menu bar).
      * Works fine on Windows.
      */
-    public boolean toggleFullscreen(boolean fullscreen)
+    private void setFullscreen(boolean fullscreen)
     {
-        if (fullscreen == false) {
-            //images and text scaled up.
-            heightChar = (int) (heightChar * resMultiplier);
-            heightRoom = (int) (heightRoom * resMultiplier);
-            fontSize = (int) (fontSizeDefault * resMultiplier);
-            jtaOutput.setFont(defaultFont.deriveFont((float) fontSize));
-            jtfInput.setFont(defaultFont.deriveFont((float) fontSize));
+        if (fullscreen == true) {
+            //images and text scaled up (and then fitted to the window).
+            setScale((int) (heightRoomDefault * resMultiplier));
             
             frame.dispose();
             previousBounds = frame.getBounds();
             frame.setUndecorated(true);
             frame.setExtendedState(JFrame.MAXIMIZED_BOTH);
-            loadFiles(currentRoom);
             
             frame.pack();
             frame.setVisible(true);
             jtfInput.requestFocusInWindow();
-            
-            fullscreen = true;
-            fullscreenMode = fullscreen;
         } else {
             //images and text reverted back to default.
-            heightChar = heightCharDefault;
-            heightRoom = heightRoomDefault;        
-            jtaOutput.setFont(defaultFont);
-            jtfInput.setFont(defaultFont);
+            setScale(heightRoomDefault);
             
             frame.dispose();
             frame.setBounds(previousBounds);
             frame.setUndecorated(false);
             frame.setExtendedState(JFrame.NORMAL);
-            loadFiles(currentRoom);
             
             frame.pack();
             frame.setVisible(true);
             jtfInput.requestFocusInWindow();
-            
-            fullscreen = false;
-            fullscreenMode = fullscreen; 
         }
-        return fullscreen;
     }
     
     /**
      * this method is called when the player gets to the
-     * "winning room".
+     * "winning room", on the thread of the game.
      */
     public void winScreen()
     {
-        frame.dispose();
-        containerText.remove(jtfInput);
-        jtaOutput.setText("");
-        frame.pack();
-        frame.setVisible(true);
+        SwingUtilities.invokeLater(new Runnable() {
+                            public void run() {
+                                frame.dispose();
+                                containerText.remove(jtfInput);
+                                jtaOutput.setText("");
+                                frame.pack();
+                                frame.setVisible(true);
+                            }
+                        });
     }
 }
@@ -1,4 +1,16 @@
-import java.util.Stack;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 
@@ -9,8 +21,9 @@ import java.util.TimerTask;
  *  
  *  Users can walk around, talk to characters and interact with objects.
  * 
- *  This class creates and initialises all the others: it creates all
- *  rooms, characters, items, creates the parser and starts the game. 
+ *  This class creates and initialises all the others: it loads the
+ *  world (rooms, characters, items) from a world file, creates the
+ *  parser and starts the game. 
  *  It also evaluates and executes the commands that the parser returns.
  * 
  * @author  Sarunas Djacenko
@@ -20,24 +33,454 @@ import java.util.TimerTask;
 public class Game 
 {
     private GUI gui;
+    private GameOutput out;
     private Parser parser;
-    private Player player[];
-    private Room room[], currentRoom, nextRoom, previousRoom;
-    private Item item[];
-    private Stack roomHistory = new Stack();
-    private boolean fullscreenMode, isCreated, canUsePortal;
-    private boolean bankerHS, chefHS, salesmanHS, scientistHS1, scientistHS2, thiefHS;
-    private boolean childStory, guardStory, librarianStory;
+    private static final String WORLD_FILE = "worlds/tomorrow.world";
+    private static final String SAVE_FOLDER = "saves";
+    private static final int SAVE_MAGIC = 0x574f5432;   // "WOT2"
+    private static final int SNAPSHOT_INTERVAL = 1000;  // commands between snapshots
+    private static final int ROOM_HISTORY = 100;        // rooms remembered for "back"
+    private static final int UNDO_LEVELS = 20;          // commands that can be undone
+    private static final String PORTAL_FLAG = "portal"; // set when the portal can be used
+
+    private String worldFile;
+    private World world;
+    private CommandJournal journal;
+    private int commandsSinceSnapshot;
+    private Player player;
+    private Room currentRoom, nextRoom, previousRoom;
+    private RingBuffer<Integer> roomHistory = new RingBuffer<>(ROOM_HISTORY);   // room indexes
+    private UndoStates undoStates = new UndoStates(UNDO_LEVELS);   // see undo
+    private boolean fullscreenMode, isCreated, isFinished;
+    private boolean[] flags;    // the flags named by the header "flags" of the world file
     private long startTime, endTime;
 
     /**
-     * Create the GUI, and print a Welcome message, asking the player
-     * what they would like to be called.
+     * Create a game without a GUI. A GUI can be attached with setGUI,
+     * otherwise the game runs headless (for example inside a GameEngine).
      */
     public Game() 
     {
-        gui = new GUI(this);
-        printWelcome(); 
+        this(WORLD_FILE);
+    }
+
+    /**
+     * Create a game without a GUI, in the world of the given world file.
+     */
+    public Game(String worldFile)
+    {
+        this.worldFile = worldFile;
+        out = new GameOutput();
+    }
+
+    /**
+     * Attach a GUI to this game. The GUI is updated every time the
+     * player moves, and is used for fullscreen mode and the win screen.
+     * It is called on the thread running the game, and hands the changes
+     * on to the event dispatch thread.
+     */
+    public void setGUI(GUI gui)
+    {
+        this.gui = gui;
+    }
+
+    /**
+     * Keep a journal of this game: every line of input the game accepts
+     * is added to it once it has been carried out, and every 1000
+     * commands (and after "load" and "undo") a snapshot of the game is
+     * written.
+     * May be null.
+     */
+    public void setJournal(CommandJournal journal)
+    {
+        this.journal = journal;
+    }
+
+    /**
+     * Make the game again from its journal: from the last snapshot, and
+     * the lines added after it, which are carried out with the output
+     * muted (see replay). Then keep the journal (see setJournal).
+     */
+    public void recover(CommandJournal journal) throws IOException
+    {
+        this.journal = null;
+        long position = 0;
+        byte[] snapshot = journal.readSnapshot();
+        if(snapshot != null) {
+            position = ByteBuffer.wrap(snapshot).getLong();
+            restore(Arrays.copyOfRange(snapshot, 8, snapshot.length));
+        }
+        List<String> lines = journal.read(position);
+        out.setMuted(true);
+        try {
+            int first = 0;
+            if(!isCreated && !lines.isEmpty()) {
+                // the first line names the player.
+                updateGameState(lines.get(0));
+                first = 1;
+            }
+            replay(lines, first);
+        } finally {
+            out.setMuted(false);
+        }
+        commandsSinceSnapshot = lines.size();
+        this.journal = journal;
+    }
+
+    /**
+     * Carry out "lines" from "first" on. Keeping the state before a
+     * command (see keepUndoState) takes longer than most commands, so the
+     * states are only kept for the last commands that may change the
+     * state, as many as can be undone. A state that is the same as the
+     * one kept before it is not kept again, so that may be too few: then
+     * the game is put back, and the lines are carried out again, keeping
+     * the states for twice as many commands.
+     */
+    private void replay(List<String> lines, int first)
+    {
+        int levels = undoStates.getCapacity();
+        byte[] start = null;
+        for(int window = levels; ; window *= 2) {
+            int keepFrom = getUndoStart(lines, first, window);
+            if(start != null) {
+                // put the game back as it was before the last try.
+                undoStates = new UndoStates(levels);
+                restore(start);
+            }
+            if(keepFrom == first) {
+                // every state is kept, as if the lines were typed.
+                for(int i = first; i < lines.size(); i++) {
+                    updateGameState(lines.get(i));
+                }
+                return;
+            }
+            if(start == null) {
+                start = save();
+            }
+            undoStates = new UndoStates(0);
+            for(int i = first; i < lines.size(); i++) {
+                if(i == keepFrom) {
+                    // one more than needed: only the oldest state kept may
+                    // be one that would not have been kept again.
+                    undoStates = new UndoStates(levels + 1);
+                }
+                updateGameState(lines.get(i));
+            }
+            if(undoStates.size() > levels) {
+                UndoStates kept = new UndoStates(levels);
+                for(int i = 1; i < undoStates.size(); i++) {
+                    kept.push(undoStates.get(i));
+                }
+                undoStates = kept;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return The first of "lines" (from "first" on) before which the
+     * state is kept, so that the last "window" commands that may change
+     * the state can be undone. If no earlier command may change the state,
+     * or if one of the lines is "undo", which needs the states before it,
+     * that is "first". (An undo is followed by a snapshot, so a journal
+     * only has one after it if the snapshot could not be written.)
+     */
+    private int getUndoStart(List<String> lines, int first, int window)
+    {
+        int changes = 0;
+        int start = first;
+        boolean isDropped = false;
+        for(int i = lines.size() - 1; i >= first; i--) {
+            CommandWord commandWord = parser.getCommand(lines.get(i)).getCommandWord();
+            if(commandWord == CommandWord.UNDO) {
+                return first;
+            }
+            if(canChangeState(commandWord)) {
+                if(changes < window) {
+                    changes++;
+                    start = i;
+                } else {
+                    isDropped = true;
+                }
+            }
+        }
+        return isDropped ? start : first;
+    }
+
+    /**
+     * @return The output this game writes its messages to.
+     */
+    public GameOutput getOutput()
+    {
+        return out;
+    }
+
+    /**
+     * Start the game by printing a Welcome message, asking the player
+     * what they would like to be called.
+     * @return The text of the Welcome message.
+     */
+    public String start()
+    {
+        printWelcome();
+        return out.flush();
+    }
+
+    /**
+     * @return true once the player has been named, and the world made.
+     */
+    public boolean isCreated()
+    {
+        return isCreated;
+    }
+
+    /**
+     * @return true if the player has quit or won the game.
+     */
+    public boolean isFinished()
+    {
+        return isFinished;
+    }
+
+    /**
+     * @return The state of the game: the room the player is in, the flags
+     * of the story, and everything in the world that has changed. Games
+     * in the same state (however they got there) have equal states.
+     * Only available once the player has been named.
+     */
+    public GameState getState()
+    {
+        GameState state = new GameState();
+        state.add(world.getFile().getRoomIndex(player.getCurrentRoom().getId()));
+        boolean[] all = new boolean[1 + flags.length];
+        all[0] = isFinished;
+        System.arraycopy(flags, 0, all, 1, flags.length);
+        state.addFlags(all);
+        world.addState(state, player);
+        return state;
+    }
+
+    /**
+     * Put the game into a state made by getState (of a game of the same
+     * world). The world is made again, and only the rooms the state needs
+     * are read, so this takes microseconds. The way back, and the commands
+     * that could be undone, are forgotten.
+     * Only available once the player has been named.
+     */
+    public void setState(GameState state)
+    {
+        setState(state, player.getNameDisplayed());
+        undoStates.clear();
+    }
+
+    /**
+     * Keep the states before the last "levels" commands, so they can be
+     * undone (20 unless changed). With 0, nothing is kept, and saving the
+     * state before each command is not needed (for example in the Solver).
+     */
+    public void setUndoLevels(int levels)
+    {
+        undoStates = new UndoStates(levels);
+    }
+
+    /**
+     * Put the game into a state made by getState, for a player called "name".
+     * @return The position in the state after the game's part.
+     */
+    private int setState(GameState state, String name)
+    {
+        WorldFile file = world.getFile();
+        world = new World(file);
+        player = new Player(name, file.getHeader("player"));
+        currentRoom = world.getRoom(file.getRoomId(state.get(0)));
+        player.enterRoom(currentRoom);
+
+        flags = new boolean[file.getHeaderWords("flags").length];
+        isFinished = state.getFlag(1, 0);
+        for(int i = 0; i < flags.length; i++) {
+            flags[i] = state.getFlag(1, i + 1);
+        }
+        roomHistory.clear();
+        // the flags take one number for every 32.
+        return world.setState(state, 1 + (flags.length + 32) / 32, player);
+    }
+
+    /**
+     * Save the whole game into a few bytes: the player's name, how long
+     * the player has played, the whole state (see getWholeState) and the
+     * states kept for undo.
+     * Only available once the player has been named.
+     */
+    public byte[] save()
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        try {
+            data.writeInt(SAVE_MAGIC);
+            data.writeInt(world.getFile().getChecksum());
+            data.writeUTF(player.getNameDisplayed());
+            data.writeInt((int) ((System.nanoTime() - startTime) / 1000000000L));
+            writeBytes(data, getWholeState().toBytes());
+            data.writeInt(undoStates.size());
+            for(int i = 0; i < undoStates.size(); i++) {
+                writeBytes(data, undoStates.get(i));
+            }
+        } catch(IOException e) {
+            // cannot happen when writing to memory.
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Put the game back as it was when "saved" was made by save. If the
+     * player has not been named yet, the game is set up first, without
+     * printing anything.
+     * @throws IllegalArgumentException if "saved" is not a game saved in
+     * the world of this game.
+     */
+    public void restore(byte[] saved)
+    {
+        String name;
+        int seconds;
+        GameState state;
+        byte[][] undone;
+        try {
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(saved));
+            if(data.readInt() != SAVE_MAGIC) {
+                throw new IllegalArgumentException("This is not a saved game.");
+            }
+            int checksum = data.readInt();
+            name = data.readUTF();
+            seconds = data.readInt();
+            state = GameState.fromBytes(readBytes(data));
+            undone = new byte[data.readInt()][];
+            for(int i = 0; i < undone.length; i++) {
+                undone[i] = readBytes(data);
+            }
+            if(!isCreated) {
+                isCreated = true;
+                parser = new Parser();
+                createRooms(name);
+                addWordsToParser();
+            }
+            if(checksum != world.getFile().getChecksum()) {
+                throw new IllegalArgumentException("The game was saved in another world.");
+            }
+        } catch(IOException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("This is not a saved game.", e);
+        }
+
+        setWholeState(state, name);
+        parser.addWord(player.getName());
+        startTime = System.nanoTime() - seconds * 1000000000L;
+        undoStates.clear();
+        for(byte[] before : undone) {
+            undoStates.push(before);
+        }
+        if(gui != null) {
+            gui.updateFrame(currentRoom);
+        }
+    }
+
+    /**
+     * @return The state of the game (see getState), followed by the way
+     * back and the order of the items (see World.addOrder): everything
+     * needed to put the game back exactly as it is, apart from the time.
+     */
+    private GameState getWholeState()
+    {
+        GameState state = getState();
+        state.add(roomHistory.size());
+        for(int i = 0; i < roomHistory.size(); i++) {
+            state.add(roomHistory.get(i));
+        }
+        world.addOrder(state, player);
+        return state;
+    }
+
+    /**
+     * Put the game into a state made by getWholeState, for a player called
+     * "name".
+     * @throws IllegalArgumentException if the state is damaged.
+     */
+    private void setWholeState(GameState state, String name)
+    {
+        WorldFile file = world.getFile();
+        try {
+            int position = setState(state, name);
+            int count = state.get(position++);
+            for(int i = 0; i < count; i++) {
+                int index = state.get(position++);
+                file.getRoomId(index);      // check it is a room
+                roomHistory.push(index);
+            }
+            world.setOrder(state, position, player);
+        } catch(IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("The saved game is damaged.", e);
+        }
+    }
+
+    /**
+     * Write "bytes" to "data": their number, then the bytes.
+     */
+    private static void writeBytes(DataOutputStream data, byte[] bytes) throws IOException
+    {
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    /**
+     * @return Bytes written by writeBytes.
+     */
+    private static byte[] readBytes(DataInputStream data) throws IOException
+    {
+        byte[] bytes = new byte[data.readInt()];
+        data.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * @return Every command that may change the game from where the player
+     * is now: going through each exit, taking, giving and using the items
+     * at hand, and talking to each character in the room.
+     * An item is only dropped when that can help here and now: when
+     * something in the room is too heavy to carry with it, or when it is
+     * something other items can be used on. Dropping it anywhere else can
+     * always wait until then.
+     */
+    public List<String> getPossibleCommands()
+    {
+        ArrayList<String> commands = new ArrayList<>();
+        Room room = player.getCurrentRoom();
+        boolean isBagFull = false;
+        for(Item item : room.getItemList()) {
+            isBagFull |= !player.canPickItem(item.getSymbol());
+        }
+        for(Player character : room.getCharacterList()) {
+            isBagFull |= character.getItemOwned2() != null && !player.canReceiveItem(character);
+        }
+        for(String direction : room.getExitDirections()) {
+            commands.add("go " + direction);
+        }
+        for(Item item : room.getItemList()) {
+            commands.add("take " + item.getName());
+        }
+        for(Player character : room.getCharacterList()) {
+            commands.add("talk " + character.getName());
+        }
+        for(Item item : player.getItemList()) {
+            if(isBagFull || item.canBeUsedOn()) {
+                commands.add("drop " + item.getName());
+            }
+            for(Player character : room.getCharacterList()) {
+                commands.add("give " + item.getName() + " " + character.getName());
+            }
+            for(Item target : room.getItemList()) {
+                commands.add("use " + item.getName() + " " + target.getName());
+            }
+        }
+        return commands;
     }
 
     /**
@@ -50,145 +493,161 @@ public class Game
     {
         parser = new Parser();
         createRooms(text);
-        gui.updateFrame(currentRoom);
+        addWordsToParser();
+        if(gui != null) {
+            gui.updateFrame(currentRoom);
+        }
         printInfo();
         startTime = System.nanoTime();
     }
 
     /**
-     * Create all the rooms and link their exits together.
-     * Creates charcters and items, and puts them into rooms.
+     * Load the world from its world file, and create the player. Only
+     * the room the player starts in is made now; the other rooms are
+     * made when the player first goes there (see World).
      * Makes the player enter the first room.
      */
     private void createRooms(String playerName)
     {
-        // create the rooms
-        // parameters: room name, room image location.
-        room = new Room[12];
-        room[0] = new Room("Physics Lab", "images/rooms/physlab.png");
-        room[1] = new Room("Hallway (Lower Ground)", "images/rooms/hallwaylower.png");
-        room[2] = new Room("Computing Lab", "images/rooms/complab.png");
-        room[3] = new Room("Library", "images/rooms/library.png");
-        room[4] = new Room("Hallway (South Side)", "images/rooms/hallwaysouth.png");
-        room[5] = new Room("Lobby", "images/rooms/lobby.png");
-        room[6] = new Room("Garden", "images/rooms/garden.png");
-        room[7] = new Room("Shop", "images/rooms/shop.png");
-        room[8] = new Room("Hallway (North Side)", "images/rooms/hallwaynorth.png");
-        room[9] = new Room("Cafeteria", "images/rooms/cafeteria.png");
-        room[10] = new Room("Bank", "images/rooms/bank.png");
-        room[11] = new Room("", "images/other/winscreen.png"); // win room
-
-        // create the items and put some of them into rooms
-        // parameters: item name, item description, item weight
-        item = new Item[9];
-        item[0] = new Item("Fuel", "strange looking, neon blue fuel", 50);
-        item[1] = new Item("Machine", "", 100); //cannot pickup, maxWeight = 99
-        item[2] = new Item("Ball", "a football", 30);
-        item[3] = new Item("Book", "a heavy book", 35);
-        item[4] = new Item("Cheese", "a fragrant block of cheese", 25);
-        item[5] = new Item("Flashlight", "a bright flashlight", 15);
-        item[6] = new Item("Food", "a mouth-watering pizza", 30);
-        item[7] = new Item("Money", "a large amount of money", 15);
-        item[8] = new Item("Wallet", "a lost wallet", 20);
-        
-        room[0].addItem(item[1]);
-        room[2].addItem(item[2]);
-        room[9].addItem(item[3]);
-        room[7].addItem(item[4]);
-        room[1].addItem(item[5]);
-        
-        // create the characters and put them into rooms
-        // Parameters: Name, Image, ItemWanted, ItemOwned1, ItemOwned2
-        player = new Player[9];
-        player[0] = new Player(playerName, "images/characters/player.png", null, null, null);
-        player[1] = new Player("Banker", "images/characters/banker.png", item[8], null, null);
-        player[2] = new Player("Chef", "images/characters/chef.png", item[4], null, null);
-        player[3] = new Player("Child", "images/characters/child.png", item[2], null, null);
-        player[4] = new Player("Guard", "images/characters/guard.png", item[5], null, null);
-        player[5] = new Player("Librarian", "images/characters/librarian.png", item[3], null, null);
-        player[6] = new Player("Salesman", "images/characters/salesman.png", item[7], null, item[0]);
-        player[7] = new Player("Scientist", "images/characters/scientist.png", item[0], null, null);
-        player[8] = new Player("Thief", "images/characters/thief.png", item[6], null, item[8]);
-        
-        room[10].addPlayer(player[1]);
-        room[9].addPlayer(player[2]);
-        room[6].addPlayer(player[3]);
-        room[10].addPlayer(player[4]);
-        room[3].addPlayer(player[5]);
-        room[7].addPlayer(player[6]);
-        room[0].addPlayer(player[7]);
-        room[4].addPlayer(player[8]);
-        
-        // initialise room exits
-        // lower ground floor 
-        room[0].setExit("east", room[1]);
-
-        room[1].setExit("east", room[2]);
-        room[1].setExit("west", room[0]);
-        room[1].setExit("upstairs", room[4]);
-
-        room[2].setExit("west", room[1]);
-
-        // ground floor 
-        room[3].setExit("east", room[4]);
-
-        room[4].setExit("north", room[8]);
-        room[4].setExit("east", room[5]);
-        room[4].setExit("west", room[3]);
-        room[4].setExit("downstairs", room[1]);
-
-        room[5].setExit("north", room[9]);
-        room[5].setExit("east", room[6]);
-        room[5].setExit("west", room[4]);
-
-        room[6].setExit("west", room[5]);
-        room[6].setExit("hole", room[2]); // one-way
-
-        room[7].setExit("east", room[8]);
-
-        room[8].setExit("north", room[10]);
-        room[8].setExit("east", room[9]);
-        room[8].setExit("south", room[4]);
-        room[8].setExit("west", room[7]);
+        try {
+            world = new World(WorldFile.load(worldFile));
+        } catch(IOException e) {
+            throw new UncheckedIOException("Cannot load " + worldFile, e);
+        }
+        player = new Player(playerName, world.getFile().getHeader("player"));
+        flags = new boolean[world.getFile().getHeaderWords("flags").length];
 
-        room[9].setExit("south", room[5]);
-        room[9].setExit("west", room[8]);
-        
-        room[10].setExit("south", room[8]);
+        // make user enter the start room
+        currentRoom = world.getStartRoom();
+        player.enterRoom(currentRoom);
+    }
 
-        // make user enter room[0]
-        currentRoom = room[0];
-        player[0].enterRoom(currentRoom);
+    /**
+     * Tell the parser the names of all items, characters and exits, so it
+     * recognises them when the user types them.
+     */
+    private void addWordsToParser()
+    {
+        WorldFile file = world.getFile();
+        for(String id : file.getItemIds()) {
+            parser.addWord(id);
+        }
+        for(String id : file.getCharacterIds()) {
+            parser.addWord(id);
+        }
+        parser.addWord(player.getName());
+        for(String direction : file.getHeaderWords("directions")) {
+            parser.addWord(direction);
+        }
     }
 
     /**
      * The first time this is called, the user's input is recorded, and
      * set to the name of their player. Every time after the first,
      * this method pdates the game based on the user's command.
-     * If a user chooses to quit, the JVM is terminated after 3 seconds.
+     * If a user chooses to quit, the JVM is terminated after 3 seconds
+     * (only when a GUI is attached; a headless game is just finished).
+     * The output of the command is flushed once, at the end.
+     * @return The text printed in response to the user's input.
      */
-    public void updateGameState(String text)
+    public String updateGameState(String text)
     {
         boolean quit = false;
 
         if(isCreated == false) {
             isCreated = true;
             createGame(text);
+            if(journal != null) {
+                journal.append(text);
+            }
         } else {
             Command command = parser.getCommand(text);
+            CommandWord commandWord = command.getCommandWord();
+            if(canChangeState(commandWord)) {
+                keepUndoState();
+            }
             quit = processCommand(command);
+            // only a command that has been carried out is added, so one
+            // that fails is not carried out again by recover.
+            if(journal != null && commandWord != CommandWord.UNKNOWN) {
+                journal.append(text);
+            }
+            if(journal != null && (++commandsSinceSnapshot >= SNAPSHOT_INTERVAL
+                                   || commandWord == CommandWord.LOAD
+                                   || commandWord == CommandWord.UNDO)) {
+                // a loaded game comes from a file that may change later,
+                // and recover need not keep states for an undo to use.
+                writeSnapshot();
+            }
             if (quit == true) {
-                System.out.print("Thank you for playing. Good bye.");
-                new Timer().schedule( 
-                    new TimerTask() {
-                        public void run() {
-                            System.exit(0);
-                        }
-                    }, 
-                    3000 
-                );
+                isFinished = true;
+                out.print("Thank you for playing. Good bye.");
+                if(gui != null) {
+                    new Timer().schedule( 
+                        new TimerTask() {
+                            public void run() {
+                                System.exit(0);
+                            }
+                        }, 
+                        3000 
+                    );
+                }
             }
         }
+        return out.flush();
+    }
+
+    /**
+     * @return true if a command may change the state of the game (and so
+     * can be undone).
+     */
+    private boolean canChangeState(CommandWord commandWord)
+    {
+        switch (commandWord) {
+            case GO:
+            case BACK:
+            case GOTO:
+            case LOAD:
+            case TALK:
+            case TAKE:
+            case DROP:
+            case GIVE:
+            case USE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Keep the state of the game before a command, so the command can be
+     * undone. If the last command did not change anything, the state kept
+     * before it is the same, and is not kept twice. Only what changed
+     * between the states is kept (see UndoStates).
+     */
+    private void keepUndoState()
+    {
+        if(undoStates.getCapacity() == 0) {
+            return;
+        }
+        byte[] before = getWholeState().toBytes();
+        if(!Arrays.equals(before, undoStates.peek())) {
+            undoStates.push(before);
+        }
+    }
+
+    /**
+     * Write a snapshot of the game to the journal. If it cannot be
+     * written, the game goes on, and the journal still has every command.
+     */
+    private void writeSnapshot()
+    {
+        commandsSinceSnapshot = 0;
+        try {
+            journal.writeSnapshot(save());
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
     }
 
     /**
@@ -197,9 +656,9 @@ public class Game
      */
     private void printWelcome()
     {
-        System.out.println();
-        System.out.println("Welcome to the World of Tomorrow, stranger.");
-        System.out.println("What would you like to be called?");   
+        out.println();
+        out.println("Welcome to the World of Tomorrow, stranger.");
+        out.println("What would you like to be called?");   
     }
 
     /**
@@ -207,11 +666,11 @@ public class Game
      */
     private void printInfo()
     {
-        System.out.println("Enjoy your stay in the World of Tomorrow, " + player[0].getNameDisplayed() + "!");
-        System.out.println("Type 'fullscreen' to toggle Fullscreen mode.");
-        System.out.println("Type 'help' if you need help.");
-        System.out.println();
-        System.out.println(player[0].getLongDescription());
+        out.println("Enjoy your stay in the World of Tomorrow, " + player.getNameDisplayed() + "!");
+        out.println("Type 'fullscreen' to toggle Fullscreen mode.");
+        out.println("Type 'help' if you need help.");
+        out.println();
+        out.println(player.getLongDescription());
     }
 
     /**
@@ -224,10 +683,16 @@ public class Game
         boolean wantToQuit = false;
 
         CommandWord commandWord = command.getCommandWord();
+        if(commandWord != CommandWord.GOTO && commandWord != CommandWord.SAVE
+           && commandWord != CommandWord.LOAD && commandWord != CommandWord.UNDO) {
+            // "goto" names a room anywhere in the world, not something here,
+            // "save" and "load" name a saved game, and "undo" has a number.
+            command = resolveWords(command);
+        }
 
         switch (commandWord) {
             case UNKNOWN:
-            System.out.println("I don't know what you mean...");
+            out.println("I don't know what you mean...");
             break;
 
             case GO:
@@ -238,6 +703,22 @@ public class Game
             goBack(command);
             break;
 
+            case GOTO:
+            gotoRoom(command);
+            break;
+
+            case SAVE:
+            saveGame(command);
+            break;
+
+            case LOAD:
+            loadGame(command);
+            break;
+
+            case UNDO:
+            undo(command);
+            break;
+
             case LOOK:
             look();
             break;
@@ -281,6 +762,48 @@ public class Game
         return wantToQuit;
     }
 
+    /**
+     * @return The command, with its second and third word completed or
+     * corrected (see resolveWord).
+     */
+    private Command resolveWords(Command command)
+    {
+        String secondWord = resolveWord(command.getSecondWord());
+        String thirdWord = resolveWord(command.getThirdWord());
+        if(secondWord == command.getSecondWord() && thirdWord == command.getThirdWord()) {
+            // nothing changed, so the symbols from the parser are still right.
+            return command;
+        }
+        return new Command(command.getCommandWord(), secondWord, thirdWord, command.getWords());
+    }
+
+    /**
+     * Complete or correct a word the user typed, using the names of the
+     * exits, items and characters in the current room, and of the items
+     * the player carries. For example "sci" becomes "scientist".
+     * Words that match nothing (or more than one name) are left as they are.
+     */
+    private String resolveWord(String word)
+    {
+        if(word == null) {
+            return null;
+        }
+        WordTrie<String> roomWords = player.getCurrentRoom().getVocabulary();
+        WordTrie<String> bagWords = player.getVocabulary();
+        if(roomWords.get(word) != null || bagWords.get(word) != null) {
+            return word;
+        }
+        String inRoom = roomWords.resolve(word);
+        String inBag = bagWords.resolve(word);
+        if(inRoom == null) {
+            return inBag == null ? word : inBag;
+        }
+        if(inBag == null || inBag.equals(inRoom)) {
+            return inRoom;
+        }
+        return word;
+    }
+
     // implementations of user commands:
 
     /**
@@ -288,11 +811,15 @@ public class Game
      */
     private void fullscreen()
     {
+        if(gui == null) {
+            out.println("Fullscreen mode is not available.");
+            return;
+        }
         fullscreenMode = gui.toggleFullscreen(fullscreenMode);
         if (fullscreenMode == true) {
-            System.out.println("Entered Fullscreen Mode.");
+            out.println("Entered Fullscreen Mode.");
         } else if (fullscreenMode == false) {
-            System.out.println("Entered Windowed Mode.");
+            out.println("Entered Windowed Mode.");
         }
     }
 
@@ -301,9 +828,9 @@ public class Game
      */
     private void printHelp()
     {
-        System.out.println("You are lost in a strange world, hoping to find a way back to the real world.");
-        System.out.println();
-        System.out.println("Your command words are: " + parser.getCommandList()); 
+        out.println("You are lost in a strange world, hoping to find a way back to the real world.");
+        out.println();
+        out.println("Your command words are: " + parser.getCommandList()); 
     }
 
     /** 
@@ -314,50 +841,239 @@ public class Game
     {
         if(!command.hasSecondWord()) {
             // if there is no second word, we don't know where to go...
-            System.out.println("Go where?");
+            out.println("Go where?");
             return;
         }
 
-        String direction = command.getSecondWord();
-
         // Try to leave current room.
-        nextRoom = player[0].getCurrentRoom().getExit(direction);
+        nextRoom = player.getCurrentRoom().getExit(command.getSecondSymbol());
 
         if (nextRoom == null) {
-            System.out.println("There is no door!");
+            out.println("There is no door!");
         }
         else {
-            if (nextRoom == room[11]) {
+            if (nextRoom == world.getWinRoom()) {
                 win();
             } else {
-                roomHistory.push(player[0].getCurrentRoom());
-                player[0].enterRoom(nextRoom);
-                gui.updateFrame(nextRoom);
-                System.out.println(player[0].getLongDescription());
+                rememberRoom();
+                player.enterRoom(nextRoom);
+                if(gui != null) {
+                    gui.updateFrame(nextRoom);
+                }
+                out.println(player.getLongDescription());
             }
         }
     }
 
     /**
      * Go back to the previous room. Obtained from the stack of rooms
-     * previously visited.
+     * previously visited (only the last 100 are remembered).
      * If there is no previous room, the user is told this.
      */
     private void goBack(Command command) {
         if(command.hasSecondWord()) {
-            System.out.println("Back where?");
+            out.println("Back where?");
             return;
         }
 
         if (roomHistory.isEmpty()) {
-            System.out.println("You can't go back to nothing");
+            out.println("You can't go back to nothing");
         }
         else {
-            previousRoom = (Room) roomHistory.pop();
-            player[0].enterRoom(previousRoom);
-            gui.updateFrame(previousRoom);
-            System.out.println(player[0].getLongDescription());
+            previousRoom = world.getRoom(world.getFile().getRoomId(roomHistory.pop()));
+            player.enterRoom(previousRoom);
+            if(gui != null) {
+                gui.updateFrame(previousRoom);
+            }
+            out.println(player.getLongDescription());
+        }
+    }
+
+    /**
+     * Remember the room the player is in, for "back".
+     */
+    private void rememberRoom()
+    {
+        roomHistory.push(world.getFile().getRoomIndex(player.getCurrentRoom().getId()));
+    }
+
+    /**
+     * Go to a room anywhere in the world by the shortest way, through as
+     * many exits as needed (see RoutePlanner). The room is named by its
+     * description, such as "goto physics lab" (see World.findRoomId), or
+     * else by its id. The GUI is only updated once, for the room the
+     * player ends up in, and the user is told the directions the player
+     * actually went in. If the way leads through the portal, the player
+     * wins (if the portal can be used) there.
+     */
+    private void gotoRoom(Command command)
+    {
+        if(!command.hasSecondWord()) {
+            // if there is no second word, we don't know where to go...
+            out.println("Go to which room?");
+            return;
+        }
+
+        String name = getRoomName(command);
+        String roomId = world.findRoomId(name);
+        if(roomId == null) {
+            roomId = command.getSecondWord();
+        }
+        Room start = player.getCurrentRoom();
+        ArrayList<String> route = world.getRoutePlanner().getRoute(start.getId(), roomId);
+        if(route == null) {
+            out.println("You don't know the way to " + name + ".");
+            return;
+        }
+        if(route.isEmpty()) {
+            out.println("You are already there.");
+            return;
+        }
+
+        ArrayList<String> taken = new ArrayList<>();
+        for(String direction : route) {
+            nextRoom = player.getCurrentRoom().getExit(direction);
+            if(nextRoom == world.getWinRoom()) {
+                if(isFlagSet(PORTAL_FLAG)) {
+                    taken.add(direction);
+                }
+                printDirections(taken);
+                win();
+                if(isFinished) {
+                    return;
+                }
+                break;
+            }
+            rememberRoom();
+            player.enterRoom(nextRoom);
+            taken.add(direction);
+        }
+        if(taken.size() == route.size()) {
+            printDirections(taken);
+        }
+        if(gui != null && player.getCurrentRoom() != start) {
+            gui.updateFrame(player.getCurrentRoom());
+        }
+        out.println(player.getLongDescription());
+    }
+
+    /**
+     * Tell the user the directions they went in, if any.
+     */
+    private void printDirections(ArrayList<String> directions)
+    {
+        if(!directions.isEmpty()) {
+            out.println("You go " + String.join(", ", directions) + ".");
+        }
+    }
+
+    /**
+     * @return The words of a "goto" command from its second word on (so
+     * without an article such as "the"), joined by spaces.
+     */
+    private static String getRoomName(Command command)
+    {
+        String[] words = command.getWords();
+        int first = Arrays.asList(words).indexOf(command.getSecondWord());
+        if(first < 0) {
+            return command.getSecondWord();
+        }
+        return String.join(" ", Arrays.copyOfRange(words, first, words.length));
+    }
+
+    /**
+     * Save the game to the file saves/<name>.save, or saves/game.save if
+     * no name is given.
+     */
+    private void saveGame(Command command)
+    {
+        Path path = getSavePath(command);
+        if(path == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(path.getParent());
+            Files.write(path, save());
+            out.println("Game saved.");
+        } catch(IOException e) {
+            out.println("The game could not be saved.");
+        }
+    }
+
+    /**
+     * Load the game saved by "save" with the same name.
+     */
+    private void loadGame(Command command)
+    {
+        Path path = getSavePath(command);
+        if(path == null) {
+            return;
+        }
+        try {
+            restore(Files.readAllBytes(path));
+            out.println("Game loaded.");
+            out.println(player.getLongDescription());
+        } catch(IOException e) {
+            out.println("There is no saved game called " + path.getFileName() + ".");
+        } catch(IllegalArgumentException e) {
+            out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Undo the last command that changed the game, or the last n commands
+     * with "undo n" (up to 20). The game is put back into the state kept
+     * before the command (see keepUndoState); the time played goes on.
+     */
+    private void undo(Command command)
+    {
+        int steps = 1;
+        if(command.hasSecondWord()) {
+            steps = command.getSecondWord().matches("[0-9]{1,4}")
+                    ? Integer.parseInt(command.getSecondWord()) : 0;
+            if(steps < 1 || steps > undoStates.getCapacity()) {
+                out.println("Undo how many commands? You can undo up to "
+                    + undoStates.getCapacity() + ".");
+                return;
+            }
+        }
+
+        byte[] state = getWholeState().toBytes();
+        int undone = 0;
+        while(undone < steps && !undoStates.isEmpty()) {
+            byte[] before = undoStates.pop();
+            // the last command may not have changed anything.
+            if(!Arrays.equals(before, state)) {
+                state = before;
+                undone++;
+            }
         }
+        if(undone == 0) {
+            out.println("There is nothing to undo.");
+            return;
+        }
+
+        setWholeState(GameState.fromBytes(state), player.getNameDisplayed());
+        if(gui != null) {
+            gui.updateFrame(currentRoom);
+        }
+        out.println(undone == 1 ? "Undid the last command." : "Undid the last " + undone + " commands.");
+        out.println(player.getLongDescription());
+    }
+
+    /**
+     * @return The file of the saved game named by the second word of the
+     * command, or null if the name is not allowed (it may only have
+     * letters and digits).
+     */
+    private Path getSavePath(Command command)
+    {
+        String name = command.hasSecondWord() ? command.getSecondWord() : "game";
+        if(!name.matches("[A-Za-z0-9]+")) {
+            out.println("A saved game can only be called by letters and digits.");
+            return null;
+        }
+        return Paths.get(SAVE_FOLDER, name + ".save");
     }
 
     /**
@@ -365,14 +1081,14 @@ public class Game
      */
     private void look()
     {
-        System.out.println(player[0].getLongDescription());
+        out.println(player.getLongDescription());
     }
 
     /**
      * Prints out the items that the player is currently carrying.
      */
     private void printItems() {
-        System.out.println(player[0].getItemsString());
+        out.println(player.getItemsString());
     }
 
     /** 
@@ -383,21 +1099,22 @@ public class Game
     {
         if(!command.hasSecondWord()) {
             // if there is no second word, we don't know what to take...
-            System.out.println("What do you want to take?");
+            out.println("What do you want to take?");
             return;
         }
 
         String itemName = command.getSecondWord();
+        int itemSymbol = command.getSecondSymbol();
         
-        if(player[0].canPickItem(itemName) == true) {
-            Item item = player[0].pickUpItem(itemName);
+        if(player.canPickItem(itemSymbol) == true) {
+            Item item = player.pickUpItem(itemSymbol);
             if(item == null) {
-                System.out.println("There is no item called " + itemName + " here.");
+                out.println("There is no item called " + itemName + " here.");
             } else {
-                System.out.println("Picked up " + item.getDescription() + ".");
+                out.println("Picked up " + item.getDescription() + ".");
             }
         } else {
-            System.out.println("You cannot fit this item into your bag.");
+            out.println("You cannot fit this item into your bag.");
         }
     }
 
@@ -409,364 +1126,306 @@ public class Game
     {
         if(!command.hasSecondWord()) {
             // if there is no second word, we don't know what to drop...
-            System.out.println("What do you want to drop?");
+            out.println("What do you want to drop?");
             return;
         }
 
         String itemName = command.getSecondWord();
-        Item item = player[0].dropItem(itemName);
+        Item item = player.dropItem(command.getSecondSymbol());
 
         if(item == null) {
-            System.out.println("You don't carry the item: " + itemName + ".");
+            out.println("You don't carry the item: " + itemName + ".");
         } else {
-            System.out.println("Dropped " + itemName + ".");
+            out.println("Dropped " + itemName + ".");
         }
     }
 
     /** 
      * Give an item to a character if the character exists
-     * in the room, and the player has the item.
+     * in the room, and the player has the item. If there is a rule for
+     * the item and the character (see RuleTable), it says what happens;
+     * otherwise the character takes the item if it is the one it wants.
      * Otherwise, print the corresponding error message.
      */
     private void give(Command command) 
     {
         if(!command.hasSecondWord()) {
             // if there is no second word, we don't know what to give...
-            System.out.println("What do you want to give?");
+            out.println("What do you want to give?");
             return;
         }
         if(!command.hasThirdWord()) {
             // if there is no third word, we don't know who to give the item to...
-            System.out.println("Who do you want to give the item to?");
+            out.println("Who do you want to give the item to?");
             return;
         }
 
         String itemName = command.getSecondWord();
         String characterName = command.getThirdWord();
 
-        currentRoom = player[0].getCurrentRoom();
-        String roomCharacterList = currentRoom.getCharacterNames().toLowerCase();
-        boolean characterFound = false;
-
-        if(roomCharacterList.contains(characterName)) {
-            for(Player character : player) {
-                if(characterName.equals(character.getName())) {
-                    characterFound = true;
-                    Item itemWanted = character.getItemWanted();
-                    if(itemWanted == null) {
-                        System.out.println(character.getNameDisplayed() + " does not want any item.");
-                    } else {
-                        if(itemName.equals(itemWanted.getName())) {
-                            Item item = player[0].giveItem(itemName, character);
-                            if(item == null){
-                                System.out.println("You do not have " + itemName + ".");
-                            } else {
-                                System.out.println("You have given " + 
-                                    character.getItemWanted().getName() + " to " + 
-                                    character.getNameDisplayed() + ".");
-                                character.setItemOwned1(character.getItemWanted()); //sets ItemOwned1 to ItemWanted (received)
-                                character.setItemWanted(null); //set ItemWanted to null (as it is owned)
-                            }
-                        } else {
-                            System.out.println(character.getNameDisplayed() +
-                                " does not want " + itemName + ".");
-                        }
-                    }
-                }
+        currentRoom = player.getCurrentRoom();
+        Player character = currentRoom.getCharacter(command.getThirdSymbol());
+        if(character == null) {
+            out.println("There is no-one called " + characterName + " in this room.");
+            return;
+        }
+
+        // the item may have been called by an alias.
+        int itemSymbol = command.getSecondSymbol();
+        Item offered = player.getItem(itemSymbol);
+        if(offered != null) {
+            itemName = offered.getName();
+            RuleTable rules = world.getFile().getRules();
+            int rule = rules.find(RuleTable.GIVE, world.getIndex(offered), world.getIndex(character));
+            if(rule >= 0) {
+                carryOut(rules.getEffects(), rules.getFirstEffect(rule), rules.getEndEffect(rule),
+                         character, offered, character.getNameDisplayed());
+                return;
             }
         }
-        if(characterFound == false) {
-            System.out.println("There is no-one called " + characterName + " in this room.");
+
+        Item itemWanted = character.getItemWanted();
+        if(itemWanted == null) {
+            out.println(character.getNameDisplayed() + " does not want any item.");
+        } else {
+            if(offered == itemWanted || itemWanted.isCalled(itemSymbol)) {
+                itemName = itemWanted.getName();
+                Item item = player.giveItem(itemWanted.getSymbol(), character);
+                if(item == null){
+                    out.println("You do not have " + itemName + ".");
+                } else {
+                    out.println("You have given " + 
+                        character.getItemWanted().getName() + " to " + 
+                        character.getNameDisplayed() + ".");
+                    character.setItemOwned1(character.getItemWanted()); //sets ItemOwned1 to ItemWanted (received)
+                    character.setItemWanted(null); //set ItemWanted to null (as it is owned)
+                }
+            } else {
+                out.println(character.getNameDisplayed() +
+                    " does not want " + itemName + ".");
+            }
         }
     }
 
     /**
      * Try to use a carried item on another item in the room, provided
-     * both items exist.
+     * both items exist. What happens is given by the rule for the two
+     * items (see RuleTable).
      * Otherwise, print the corresponding error message.
      */
     private void use(Command command)
     {
         if(!command.hasSecondWord()) {
             // if there is no second word, we don't know what to use...
-            System.out.println("What do you want to use?");
+            out.println("What do you want to use?");
             return;
         }
         if(!command.hasThirdWord()) {
             // if there is no third word, we don't know what to use it on...
-            System.out.println("What do you want to use the item on?");
+            out.println("What do you want to use the item on?");
             return;
         }
         
         String item1Name = command.getSecondWord();
         String item2Name = command.getThirdWord();
         
-        currentRoom = player[0].getCurrentRoom();
-        String roomItemList = currentRoom.getItems().toLowerCase();
-        String bagItemList = player[0].getItems().toLowerCase();
-        
-        boolean item1Found = false;
-        boolean item2Found = false;
-        boolean canBeUsed = false;
-        boolean canBeUsedOn = false;
-        
-        if(bagItemList.contains(item1Name)) {
-            for(Item object1 : item) {
-                if(item1Name.equals(object1.getName())) {
-                    item1Found = true;
-                    canBeUsed = object1.canBeUsed();
-                    if(canBeUsed == true) {
-                        if(roomItemList.contains(item2Name)) {
-                            for(Item object2 : item) {
-                                if(item2Name.equals(object2.getName())) {
-                                    item2Found = true;
-                                    canBeUsedOn = object2.canBeUsedOn();
-                                    if(canBeUsedOn == true) {
-                                        player[0].useItem(item1Name);
-                                        if(object1 == item[0] && object2 == item[1]) {
-                                            room[0].setExit("portal", room[11]);
-                                            System.out.println("You have created a portal!");
-                                        }
-                                    } else {
-                                        System.out.println("You cannot use an item on " + object2.getName() + ".");
-                                    }
-                                }
-                            }
-                        }
-                        if(item2Found == false) {
-                            System.out.println("The room does not contain " + item2Name + ".");
-                        }
-                    } else {
-                        System.out.println(object1.getName() + " cannot be used.");
-                    }
-                }
-            }
+        currentRoom = player.getCurrentRoom();
+        Item object1 = player.getItem(command.getSecondSymbol());
+        if(object1 == null) {
+            out.println("You do not have " + item1Name + ".");
+            return;
         }
-        if(item1Found == false) {
-            System.out.println("You do not have " + item1Name + ".");
+        if(object1.canBeUsed() == false) {
+            out.println(object1.getName() + " cannot be used.");
+            return;
+        }
+        Item object2 = currentRoom.getItem(command.getThirdSymbol());
+        if(object2 == null) {
+            out.println("The room does not contain " + item2Name + ".");
+            return;
         }
+        if(object2.canBeUsedOn() == false) {
+            out.println("You cannot use an item on " + object2.getName() + ".");
+            return;
+        }
+        RuleTable rules = world.getFile().getRules();
+        int rule = rules.find(RuleTable.USE, world.getIndex(object1), world.getIndex(object2));
+        if(rule < 0) {
+            out.println("Nothing happens.");
+            return;
+        }
+        carryOut(rules.getEffects(), rules.getFirstEffect(rule), rules.getEndEffect(rule),
+                 null, object1, object2.getName());
     }
     
     /**
-     * Talk to a character if the character exists in the room.
+     * Talk to a character if the character exists in the room. What the
+     * character says and does is looked up in its Dialogue, by the state
+     * of the dialogue and whether the character still wants an item.
      */
     private void talk(Command command)
     {
         if(!command.hasSecondWord()) {
             // if there is no second word, we don't know who to talk to...
-            System.out.println("Who do you want to talk to?");
+            out.println("Who do you want to talk to?");
             return;
         }
 
         String characterName = command.getSecondWord();
 
-        currentRoom = player[0].getCurrentRoom();
-        String roomCharacterList = currentRoom.getCharacterNames().toLowerCase();
-        boolean characterFound = false;
-
-        if(roomCharacterList.contains(characterName)) {
-            for(Player character : player) {
-                if(characterName.equals(character.getName())) {
-                    characterFound = true;
-                    switch (character.getName()) {
-                        case "banker":
-                            if(character.getItemWanted() != null) {
-                                System.out.println(character.getNameDisplayed() +
-                                    ": Sorry, I can't talk right now. Someone has stolen my wallet!!");
-                            } else {
-                                if(bankerHS == false) {
-                                    bankerHS = true;
-                                    character.setItemOwned2(item[7]); //banker now has money
-                                    Item object = player[0].getItemBack(character);
-
-                                    System.out.println(character.getNameDisplayed() +
-                                        ": Thank you so much, " + player[0].getNameDisplayed() +
-                                        "! My wallet is my life!! You can have some money as "+
-                                        "a reward! \n\n ** The " + character.getNameDisplayed() + 
-                                        " gives you some " + object.getName() + " **");
-                                    if(player[0].isItemDropped() == true) {
-                                        System.out.println("\nYou do not have space in your bag. " +
-                                            "You leave the " + object.getName() + " on the floor.");
-                                    } else {
-                                        System.out.println("You receive " + object.getDescription() + ".");
-                                    }
-                                } else {
-                                    System.out.println(character.getNameDisplayed() +
-                                        ": Thanks for finding my wallet.");
-                                }
-                            }
-                            break;
-
-                        case "chef":
-                            if(character.getItemWanted() != null) {
-                                System.out.println("Mamma mia! I have no cheese.");
-                            } else {
-                                if(chefHS == false) {
-                                    chefHS = true;
-                                    character.setItemOwned2(item[6]); //chef now has food
-                                    Item object = player[0].getItemBack(character);
-
-                                    System.out.println(character.getNameDisplayed() +
-                                        ": Thank you so much, " + player[0].getNameDisplayed()
-                                        + ". I can now make delicious pizza!! \n\n " +
-                                        "** The " + character.getNameDisplayed() + " " +
-                                        "gives you some " + object.getName() + " **");
-                                    if(player[0].isItemDropped() == true) {
-                                        System.out.println("\nYou do not have space in your bag. " +
-                                            "You leave the " + object.getName() + " on the floor.");
-                                    } else {
-                                        System.out.println("You receive " + object.getDescription() + ".");
-                                    }
-                                } else {
-                                    System.out.println(character.getNameDisplayed() +
-                                        ": I hope you enjoyed the pizza, " +
-                                        player[0].getNameDisplayed() + ".");
-                                }
-                            }
-                            break;
-
-                        case "child":
-                            if(character.getItemWanted() != null) {
-                                System.out.println(character.getNameDisplayed() +
-                                    ": I've lost my ball! Waaaaah \n\n ** cries **");
-                            } else {
-                                childStory = true;
-                                System.out.println(character.getNameDisplayed() +
-                                    ": ** plays football ** ");
-                            }
-                            break;
-
-                        case "guard":
-                            if(character.getItemWanted() != null) {
-                                System.out.println(character.getNameDisplayed() +
-                                    ": I've lost my flashlight. How will I be " +
-                                    "able to keep watch during the night?");
-                            } else {
-                                guardStory = true;
-                                System.out.println(character.getNameDisplayed() +
-                                    ": Thanks for saving my job, " +
-                                    player[0].getNameDisplayed() + "! " +
-                                    "I don't think I can ever repay you.");
-                            } 
-                            break;
-
-                        case "librarian":
-                            if(character.getItemWanted() != null) {
-                                System.out.println("Some books are missing. Let me know if " +
-                                    "you find any.");
-                            } else {
-                                librarianStory = true;
-                                System.out.println("Thanks for restoring order in this place.");
-                            }
-                            break;
-
-                        case "scientist":
-                            if(character.getItemWanted() != null) {
-                                if(scientistHS1 == false) {
-                                    scientistHS1 = true;
-
-                                    System.out.println(character.getNameDisplayed() +
-                                        ": Hi there. I can tell that you are not from around here." +
-                                        " It seems you have somehow ended up in our world. Well, " +
-                                        "I have some good news. I recently built a portal-making " +
-                                        "machine, which would be able to create a portal back to " + 
-                                        "your world. However, I can't find any more fuel. If you " +
-                                        "bring me some, I will be happy to let you use the portal.");
-                                } else {
-                                    System.out.println(character.getNameDisplayed() +
-                                        ": Hello, " + player[0].getNameDisplayed() + ". I'm very " +
-                                        "confused as to how the last portal I created brought you " +
-                                        "here. I haven't found any fuel yet. If you bring me some," +
-                                        " you can use the portal to get back to your world.");
-                                }
-                            } else {
-                                if(scientistHS2 == false) {
-                                    scientistHS2 = true;
-                                    character.setItemOwned2(character.getItemOwned1());
-                                    character.setItemOwned1(null);
-                                    Item object = player[0].getItemBack(character);
-                                    object.setCanBeUsed(true);
-                                    item[1].setCanBeUsedOn(true);
-                                    canUsePortal = true;
-                                
-                                    System.out.println(character.getNameDisplayed() +
-                                        ": I can't believe you got the fuel. As a thank you, " +
-                                        "I will let you do the honours. Go ahead, create the portal!!!"
-                                        + " \n\n ** The " + character.getNameDisplayed() +
-                                        " hands you back the " + object.getName() + " **");
-                                    if(player[0].isItemDropped() == true) {
-                                        System.out.println("\nYou do not have space in your bag. " +
-                                            "You leave the " + object.getName() + " on the floor.");
-                                    } else {
-                                        System.out.println("You receive " + object.getDescription() + ".");
-                                    }
-                                } else {
-                                    System.out.println(character.getNameDisplayed() +
-                                        ": Thank you again, " + player[0].getNameDisplayed() +
-                                        ". You have allowed us all to use the portal creator.");
-                                }
-                            }
-                            break;
-
-                        case "salesman":
-                            if(character.getItemWanted() != null) {
-                                System.out.println(character.getNameDisplayed() +
-                                    ": We have lots of things to buy. Houses, cars, fuel, " +
-                                    "TVs, computers, robots,g anything you can think of!");
-                            } else {
-                                if(salesmanHS == false) {
-                                    salesmanHS = true;
-                                    Item object = player[0].getItemBack(character);
-                                    
-                                    System.out.println(character.getNameDisplayed() +
-                                        ": Enjoy the fuel, " + player[0].getNameDisplayed() +
-                                        ". \n\n ** The " + character.getNameDisplayed() + " " +
-                                        "sells you some " + object.getName() + " **");
-                                    if(player[0].isItemDropped() == true) {
-                                        System.out.println("\nYou do not have space in your bag. " +
-                                            "You leave the " + object.getName() + " on the floor.");
-                                    } else {
-                                        System.out.println("You receive " + object.getDescription() + ".");
-                                    }
-                                } else {
-                                    System.out.println(character.getNameDisplayed() +
-                                        ": We're currently out of stock.");
-                                }
-                            }
-                            break;
-
-                        case "thief":
-                            if(character.getItemWanted() != null) {
-                                System.out.println(character.getNameDisplayed() +
-                                    ": Hi, there. I accidentally took someone else's wallet, and " +
-                                    "I don't know who to return it to. I'm very hungry, so " +
-                                    "I would exchange it for some food.");
-                            } else {
-                                if(thiefHS == false) {
-                                    thiefHS = true;
-                                    Item object = player[0].getItemBack(character);
-                                    
-                                    System.out.println(character.getNameDisplayed() +
-                                        ": Thanks for the food, " + player[0].getNameDisplayed() +
-                                        ". I was starving! Here is the wallet. \n\n" +
-                                        "** The " + character.getNameDisplayed() + " " +
-                                        "hands over the " + object.getName() + " **");
-                                } else {
-                                    System.out.println(character.getNameDisplayed() +
-                                        ": Thanks for the food, " + player[0].getNameDisplayed() +
-                                        ". I was starving!");
-                                }
-                            }
-                            break;
+        currentRoom = player.getCurrentRoom();
+        Player character = currentRoom.getCharacter(command.getSecondSymbol());
+        if(character == null) {
+            out.println("There is no-one called " + characterName + " in this room.");
+            return;
+        }
+
+        Dialogue dialogue = character.getDialogue();
+        int state = character.getDialogueState();
+        int input = character.getItemWanted() != null ? Dialogue.WANTING : Dialogue.GIVEN;
+        int next = dialogue != null ? dialogue.getNext(state, input) : -1;
+        if(next < 0) {
+            out.println(character.getNameDisplayed() + " has nothing to say.");
+            return;
+        }
+
+        carryOut(dialogue.getEffects(), dialogue.getFirstEffect(state, input),
+                 dialogue.getEndEffect(state, input), character, null, character.getNameDisplayed());
+        character.setDialogueState(next);
+    }
+
+    /**
+     * Carry out the effects "from" (inclusive) to "to" (exclusive) of a
+     * dialogue or rule (see Effects).
+     * @param character The character talked or given to, or null.
+     * @param item The item used or given, or null.
+     * @param target The name of what the item is used on or given to (or
+     * of the character talked to).
+     */
+    private void carryOut(Effects effects, int from, int to, Player character, Item item, String target)
+    {
+        Item handed = null;     // the item last handed over
+        for(int effect = from; effect < to; effect++) {
+            switch (effects.getKind(effect)) {
+                case Effects.SAY:
+                    out.println(effects.getText(effect, character != null ? character.getNameDisplayed() : null,
+                        player.getNameDisplayed(), item != null ? item.getName() : null, target));
+                    break;
+
+                case Effects.HAND:
+                    if(character == null) {
+                        break;
                     }
-                }
+                    if(effects.getWord(effect, 0) != null) {
+                        character.setItemOwned2(world.getItem(effects.getWord(effect, 0)));
+                    }
+                    handed = handOver(character);
+                    item = handed;
+                    break;
+
+                case Effects.HAND_BACK:
+                    if(character == null) {
+                        break;
+                    }
+                    character.setItemOwned2(character.getItemOwned1());
+                    character.setItemOwned1(null);
+                    handed = handOver(character);
+                    item = handed;
+                    break;
+
+                case Effects.RECEIVED:
+                    if(handed == null) {
+                        break;
+                    }
+                    if(player.isItemDropped() == true) {
+                        out.println("\nYou do not have space in your bag. " +
+                            "You leave the " + handed.getName() + " on the floor.");
+                    } else {
+                        out.println("You receive " + handed.getDescription() + ".");
+                    }
+                    break;
+
+                case Effects.USABLE:
+                    world.getItem(effects.getWord(effect, 0)).setCanBeUsed(true);
+                    break;
+
+                case Effects.USE_ON:
+                    world.getItem(effects.getWord(effect, 0)).setCanBeUsedOn(true);
+                    break;
+
+                case Effects.SET:
+                    flags[effects.getFlag(effect)] = true;
+                    break;
+
+                case Effects.MOVE:
+                    moveItem(world.getItem(effects.getWord(effect, 0)), effects.getWord(effect, 1), character);
+                    break;
+
+                case Effects.EXIT:
+                    world.getRoom(effects.getWord(effect, 0)).setExit(effects.getWord(effect, 1),
+                        world.getRoom(effects.getWord(effect, 2)));
+                    break;
             }
         }
-        if(characterFound == false) {
-            System.out.println("There is no-one called " + characterName + " in this room.");
+    }
+
+    /**
+     * Move an item from where it is at hand (the bag, the room or the
+     * character) to "place": nowhere, the bag, here (the room the player
+     * is in), the character, or a room.
+     */
+    private void moveItem(Item item, String place, Player character)
+    {
+        Room room = player.getCurrentRoom();
+        player.removeItem(item.getSymbol());
+        room.removeItem(item.getSymbol());
+        if(character != null) {
+            character.removeItem(item.getSymbol());
+        }
+        switch (place) {
+            case Effects.NOWHERE:
+                break;
+            case Effects.BAG:
+                player.addItem(item);
+                break;
+            case Effects.HERE:
+                room.addItem(item);
+                break;
+            case Effects.CHARACTER:
+                if(character != null) {
+                    character.addItem(item);
+                }
+                break;
+            default:
+                world.getRoom(place).addItem(item);
+                break;
         }
     }
 
+    /**
+     * The character hands the item it owns (2) to the player, or leaves it
+     * on the floor if the player's bag is too full.
+     * @return The item, or null if the character owns nothing to hand over.
+     */
+    private Item handOver(Player character)
+    {
+        if(character.getItemOwned2() == null) {
+            return null;
+        }
+        return player.getItemBack(character);
+    }
+
+    /**
+     * @return true if the flag called "name" (in the header "flags" of the
+     * world file) is set. A flag the world does not have can never be
+     * set, so it counts as not set.
+     */
+    private boolean isFlagSet(String name)
+    {
+        int flag = Arrays.asList(world.getFile().getHeaderWords("flags")).indexOf(name);
+        return flag >= 0 && flags[flag];
+    }
+
     /** 
      * If the user types in quit, followed by any other words, ask again
      * if they truly want to quit. Otherwise, return true for wanting to 
@@ -775,7 +1434,7 @@ public class Game
     private boolean quit(Command command) 
     {
         if(command.hasSecondWord()) {
-            System.out.println("Quit what?");
+            out.println("Quit what?");
             return false;
         }
         else {
@@ -786,16 +1445,18 @@ public class Game
     // win screen
     
     /**
-     * Check if the user has completed the side-story. Return a string
-     * saying either "Yes" or "No".
+     * Check if the user has completed the side-story: set every flag named
+     * by the header "sidestory" of the world file. Return a string saying
+     * either "Yes" or "No".
      */
     private String isSideStoryCompleted()
     {
-        if(childStory == true && guardStory == true && librarianStory == true) {
-            return "Yes";
-        } else {
-            return "No";
+        for(String flag : world.getFile().getHeaderWords("sidestory")) {
+            if(!isFlagSet(flag)) {
+                return "No";
+            }
         }
+        return "Yes";
     }
     
     /**
@@ -803,21 +1464,23 @@ public class Game
      * The user is congratulated, and told statistics on whether or not
      * they completed the side-story, and how long they took to win.
      * 
-     * Schedules a task to close the game after 7 seconds.
+     * Schedules a task to close the game after 7 seconds (GUI only).
      */
     private void win()
     {
-        if (canUsePortal == false) {
-            System.out.println("The machine has no fuel.");
+        if (isFlagSet(PORTAL_FLAG) == false) {
+            out.println("The machine has no fuel.");
         } else {
-            roomHistory.push(player[0].getCurrentRoom());
-            player[0].enterRoom(nextRoom);
-            gui.updateFrame(nextRoom);
-            
-            gui.winScreen();
+            rememberRoom();
+            player.enterRoom(nextRoom);
+            isFinished = true;
+            if(gui != null) {
+                gui.updateFrame(nextRoom);
+                gui.winScreen();
+            }
 
-            System.out.println("Congratulations!!!!!!!");
-            System.out.println("You have escaped the World of Tomorrow "+
+            out.println("Congratulations!!!!!!!");
+            out.println("You have escaped the World of Tomorrow "+
                 "and returned to your world!\n\nSidestory completed: " + isSideStoryCompleted());
 
             endTime = System.nanoTime();
@@ -825,17 +1488,19 @@ public class Game
             String hours = String.format("%02d", (int) (timeTaken/3600.0));
             String minutes = String.format("%02d", (((int) (timeTaken/60.0)) % 60));
             String seconds = String.format("%02d", (int) (timeTaken % 60));
-            System.out.println("\n\nTime taken: " + hours + ":" + minutes + ":" + seconds);
+            out.println("\n\nTime taken: " + hours + ":" + minutes + ":" + seconds);
             
-            System.out.println("\n\nThank you for playing. Good bye.");
-            new Timer().schedule( 
-                new TimerTask() {
-                    public void run() {
-                        System.exit(0);
-                    }
-                }, 
-                7000
-            );
+            out.println("\n\nThank you for playing. Good bye.");
+            if(gui != null) {
+                new Timer().schedule( 
+                    new TimerTask() {
+                        public void run() {
+                            System.exit(0);
+                        }
+                    }, 
+                    7000
+                );
+            }
         }
     }
 }
\ No newline at end of file
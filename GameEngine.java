@@ -0,0 +1,216 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * The engine hosts many independent games in one JVM, without a GUI.
+ * Every game lives in its own GameSession. Sessions are plain objects,
+ * so thousands of them can be kept at the same time; the commands of
+ * all sessions are executed by one small pool of threads. Sessions that
+ * have not been used for a while can be hibernated, which keeps only a
+ * few bytes of each (see GameSession).
+ *
+ * An engine may keep a journal of every session in a folder (see
+ * CommandJournal). After a crash, a new engine on the same folder makes
+ * the sessions again (recoverSessions).
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class GameEngine
+{
+    private ConcurrentHashMap<Integer, GameSession> sessions;
+    private AtomicInteger nextId;
+    private ExecutorService executor;
+    private Path journalFolder;
+
+    /**
+     * Create an engine with one thread per processor.
+     */
+    public GameEngine()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create an engine which executes commands on the given number of threads.
+     */
+    public GameEngine(int threads)
+    {
+        this(threads, null);
+    }
+
+    /**
+     * Create an engine which executes commands on the given number of
+     * threads, and keeps a journal of every session in "journalFolder".
+     * @param journalFolder The folder of the journals, or null for none.
+     */
+    public GameEngine(int threads, Path journalFolder)
+    {
+        sessions = new ConcurrentHashMap<>();
+        nextId = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads);
+        this.journalFolder = journalFolder;
+    }
+
+    /**
+     * Start a new game.
+     * @return The id of the new session.
+     */
+    public int createSession()
+    {
+        int id = nextId.incrementAndGet();
+        sessions.put(id, new GameSession(id, executor, openJournal(id)));
+        return id;
+    }
+
+    /**
+     * Make the sessions again whose journals are in the journal folder,
+     * each from its last snapshot and the commands after it. Sessions
+     * whose game had finished are left out. Call this before making new
+     * sessions.
+     * @return The number of sessions made again.
+     * @throws UncheckedIOException if a journal cannot be read.
+     */
+    public int recoverSessions()
+    {
+        if(journalFolder == null || !Files.isDirectory(journalFolder)) {
+            return 0;
+        }
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(journalFolder, "session-*.journal")) {
+            for(Path file : files) {
+                String name = file.getFileName().toString();
+                int id = Integer.parseInt(name.substring("session-".length(), name.length() - ".journal".length()));
+                GameSession session = new GameSession(id, executor, openJournal(id));
+                if(session.isFinished()) {
+                    session.close();
+                } else {
+                    sessions.put(id, session);
+                    count++;
+                }
+                // new sessions get ids after the recovered ones.
+                if(id > nextId.get()) {
+                    nextId.set(id);
+                }
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException("Cannot read " + journalFolder, e);
+        }
+        return count;
+    }
+
+    /**
+     * Pass a line of user input to the game of a session.
+     * The session is closed once its game has finished.
+     * @param sessionId The id of the session.
+     * @param text The line the user has entered.
+     * @return A future which completes with the text printed by the command.
+     */
+    public CompletableFuture<String> submit(final int sessionId, String text)
+    {
+        final GameSession session = getSession(sessionId);
+        CompletableFuture<String> result = session.submit(text);
+        result.thenRun(new Runnable() {
+                public void run() {
+                    if(session.isFinished()) {
+                        sessions.remove(sessionId);
+                        session.close();
+                    }
+                }
+            });
+        return result;
+    }
+
+    /**
+     * @return The Welcome message of a session.
+     */
+    public String getWelcome(int sessionId)
+    {
+        return getSession(sessionId).getWelcome();
+    }
+
+    /**
+     * Close a session. Commands which are still waiting are executed,
+     * but no new commands are accepted.
+     */
+    public void closeSession(int sessionId)
+    {
+        GameSession session = sessions.remove(sessionId);
+        if(session != null) {
+            session.close();
+        }
+    }
+
+    /**
+     * Hibernate every session that has not been used for "idleMillis"
+     * milliseconds (and is not hibernated already).
+     * @return The number of sessions hibernated.
+     */
+    public int hibernateIdleSessions(long idleMillis)
+    {
+        int count = 0;
+        for(GameSession session : sessions.values()) {
+            if(!session.isHibernated() && session.getIdleTime() >= idleMillis * 1000000L) {
+                session.hibernate();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return The number of open sessions.
+     */
+    public int getSessionCount()
+    {
+        return sessions.size();
+    }
+
+    /**
+     * @return The journal of the session with the given id, or null if
+     * the engine keeps no journals.
+     */
+    private CommandJournal openJournal(int id)
+    {
+        if(journalFolder == null) {
+            return null;
+        }
+        try {
+            return new CommandJournal(journalFolder, "session-" + id);
+        } catch(IOException e) {
+            throw new UncheckedIOException("Cannot open the journal of session " + id, e);
+        }
+    }
+
+    /**
+     * @return The session with the given id.
+     */
+    private GameSession getSession(int sessionId)
+    {
+        GameSession session = sessions.get(sessionId);
+        if(session == null) {
+            throw new IllegalArgumentException("There is no session " + sessionId + ".");
+        }
+        return session;
+    }
+
+    /**
+     * Stop the engine, after all waiting commands have been executed.
+     */
+    public void shutdown() throws InterruptedException
+    {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+}
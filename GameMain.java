@@ -1,3 +1,5 @@
+import javax.swing.SwingUtilities;
+
 
 /**
  * This class contains the main method of the "World of Tomorrow" application.
@@ -9,6 +11,12 @@
 public class GameMain
 {
     public static void main(String args[]) {
-        Game game = new Game();
+        //the GUI is made on the event dispatch thread; it starts the game
+        //on a thread of its own.
+        SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    new GUI(new Game());
+                }
+            });
     }
 }
@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * Every game writes its messages to its own GameOutput instead of
+ * System.out. Messages are collected in a buffer, and handed on in one
+ * piece when the game has finished executing a command (see flush).
+ * The buffers are reused from command to command.
+ *
+ * While a game is replayed from its journal (see Game.recover), its
+ * output is muted: nothing printed is kept.
+ *
+ * A GameOutput is used by one game only, so it needs no locking.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class GameOutput
+{
+    private StringBuilder buffer;
+    private ByteBuffer bytes;
+    private CharsetEncoder encoder;
+    private OutputStream target;
+    private boolean isMuted;
+
+    /**
+     * Create an output without a target. The text of each command is
+     * only returned by flush.
+     */
+    public GameOutput()
+    {
+        buffer = new StringBuilder(1024);
+        bytes = ByteBuffer.allocate(1024);
+        encoder = StandardCharsets.UTF_8.newEncoder();
+    }
+
+    /**
+     * Set the stream that receives the text (as UTF-8) every time the
+     * output is flushed. May be null.
+     */
+    public void setTarget(OutputStream target)
+    {
+        this.target = target;
+    }
+
+    /**
+     * Mute the output, or turn it on again. Text printed while the output
+     * is muted is thrown away.
+     */
+    public void setMuted(boolean isMuted)
+    {
+        this.isMuted = isMuted;
+    }
+
+    /**
+     * @return true if the output is muted.
+     */
+    public boolean isMuted()
+    {
+        return isMuted;
+    }
+
+    /**
+     * Print a string.
+     */
+    public void print(String text)
+    {
+        if(!isMuted) {
+            buffer.append(text);
+        }
+    }
+
+    /**
+     * Print a string, followed by a new line.
+     */
+    public void println(String text)
+    {
+        if(!isMuted) {
+            buffer.append(text).append('\n');
+        }
+    }
+
+    /**
+     * Print a new line.
+     */
+    public void println()
+    {
+        if(!isMuted) {
+            buffer.append('\n');
+        }
+    }
+
+    /**
+     * Hand everything printed since the last flush to the target (with a
+     * single write), and empty the buffer.
+     * @return The text that was printed since the last flush.
+     */
+    public String flush()
+    {
+        String text = buffer.toString();
+        if(target != null && buffer.length() > 0) {
+            encode();
+            try {
+                target.write(bytes.array(), 0, bytes.position());
+                target.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        buffer.setLength(0);
+        return text;
+    }
+
+    /**
+     * Encode the buffer into the byte buffer, which grows if necessary.
+     */
+    private void encode()
+    {
+        int maxLength = (int) (buffer.length() * encoder.maxBytesPerChar());
+        if(bytes.capacity() < maxLength) {
+            bytes = ByteBuffer.allocate(maxLength);
+        }
+        bytes.clear();
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(buffer), bytes, true);
+        encoder.flush(bytes);
+    }
+}
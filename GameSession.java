@@ -0,0 +1,272 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * A session holds one Game (headless, or with a GUI attached) and the
+ * commands waiting to be executed on it. Commands are executed one at a time, in the order in
+ * which they were submitted, on whichever thread the executor provides.
+ * A session that has no waiting commands does not use a thread at all.
+ *
+ * A session that has not been used for a while can be hibernated: its
+ * game is saved into a few bytes (Game.save) and dropped, and is only
+ * made again (Game.restore) when the next command arrives.
+ *
+ * A session may keep a CommandJournal of its game. The text printed by a
+ * command is then only handed back once the command is on the disk, so a
+ * reply the user has seen is never lost. The next commands are executed
+ * meanwhile, and are written together with it.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class GameSession
+{
+    private int id;
+    private volatile Game game;         // null while hibernated
+    private byte[] saved;               // the game while hibernated
+    private volatile long lastUsed;
+    private CommandJournal journal;
+    private String welcome;
+    private Executor executor;
+    private ConcurrentLinkedQueue<PendingCommand> pending;
+    private AtomicBoolean isScheduled;
+
+    /**
+     * Create a new session with a new headless game, and start the game.
+     * @param id The id of the session.
+     * @param executor The executor which runs the commands.
+     */
+    public GameSession(int id, Executor executor)
+    {
+        this(id, executor, (CommandJournal) null);
+    }
+
+    /**
+     * Create a session whose game keeps a journal. If the journal already
+     * has lines, the game is made again from it (see Game.recover).
+     * @param id The id of the session.
+     * @param executor The executor which runs the commands.
+     * @param journal The journal of the game, or null for none.
+     * @throws UncheckedIOException if the journal cannot be read.
+     */
+    public GameSession(int id, Executor executor, CommandJournal journal)
+    {
+        this.id = id;
+        this.executor = executor;
+        this.journal = journal;
+        pending = new ConcurrentLinkedQueue<>();
+        isScheduled = new AtomicBoolean();
+        game = new Game();
+        welcome = game.start();
+        if(journal != null) {
+            try {
+                game.recover(journal);
+            } catch(IOException e) {
+                throw new UncheckedIOException("Cannot read the journal of session " + id, e);
+            }
+        }
+        lastUsed = System.nanoTime();
+    }
+
+    /**
+     * Create a session for a game that has already been made (such as one
+     * with a GUI attached), and start the game. Such a session should not
+     * be hibernated: the game made again would have no GUI.
+     * @param id The id of the session.
+     * @param executor The executor which runs the commands.
+     * @param game The game, not started yet.
+     */
+    public GameSession(int id, Executor executor, Game game)
+    {
+        this.id = id;
+        this.executor = executor;
+        this.game = game;
+        pending = new ConcurrentLinkedQueue<>();
+        isScheduled = new AtomicBoolean();
+        welcome = game.start();
+        lastUsed = System.nanoTime();
+    }
+
+    /**
+     * @return The id of the session.
+     */
+    public int getId()
+    {
+        return id;
+    }
+
+    /**
+     * @return The Welcome message printed when the game was started.
+     */
+    public String getWelcome()
+    {
+        return welcome;
+    }
+
+    /**
+     * @return true if the game of this session has finished.
+     */
+    public boolean isFinished()
+    {
+        Game current = game;
+        return current != null && current.isFinished();
+    }
+
+    /**
+     * @return true if the game of this session is hibernated.
+     */
+    public boolean isHibernated()
+    {
+        return game == null;
+    }
+
+    /**
+     * @return How long ago (in nanoseconds) the last command was submitted.
+     */
+    public long getIdleTime()
+    {
+        return System.nanoTime() - lastUsed;
+    }
+
+    /**
+     * Hibernate the game of this session, after the commands that are
+     * already waiting. A game whose player has not been named yet is not
+     * hibernated.
+     */
+    public void hibernate()
+    {
+        pending.add(new PendingCommand(null, PendingCommand.HIBERNATE));
+        schedule();
+    }
+
+    /**
+     * Close the journal of this session, after the commands that are
+     * already waiting.
+     */
+    public void close()
+    {
+        if(journal != null) {
+            pending.add(new PendingCommand(null, PendingCommand.CLOSE));
+            schedule();
+        }
+    }
+
+    /**
+     * Queue a line of user input for this session.
+     * @param text The line the user has entered.
+     * @return A future which completes with the text printed by the command.
+     */
+    public CompletableFuture<String> submit(String text)
+    {
+        PendingCommand command = new PendingCommand(text, PendingCommand.INPUT);
+        lastUsed = System.nanoTime();
+        pending.add(command);
+        schedule();
+        return command.result;
+    }
+
+    /**
+     * Make sure the queue is being drained, unless it already is.
+     */
+    private void schedule()
+    {
+        if(isScheduled.compareAndSet(false, true)) {
+            executor.execute(new Runnable() {
+                    public void run() {
+                        drain();
+                    }
+                });
+        }
+    }
+
+    /**
+     * Execute all waiting commands. Only one thread at a time gets here
+     * for a session, so the Game itself needs no locking.
+     */
+    private void drain()
+    {
+        PendingCommand command;
+        while((command = pending.poll()) != null) {
+            try {
+                if(command.kind == PendingCommand.HIBERNATE) {
+                    if(game != null && game.isCreated()) {
+                        saved = game.save();
+                        game = null;
+                    }
+                    command.result.complete("");
+                    continue;
+                }
+                if(command.kind == PendingCommand.CLOSE) {
+                    journal.close();
+                    command.result.complete("");
+                    continue;
+                }
+                if(game == null) {
+                    Game woken = new Game();
+                    woken.restore(saved);
+                    woken.setJournal(journal);
+                    saved = null;
+                    game = woken;
+                }
+                String text = game.updateGameState(command.text);
+                if(journal == null) {
+                    command.result.complete(text);
+                } else {
+                    reply(command, text);
+                }
+            } catch (IOException e) {
+                command.result.completeExceptionally(e);
+            } catch (RuntimeException e) {
+                command.result.completeExceptionally(e);
+            }
+        }
+        isScheduled.set(false);
+        // a command may have been added after the last poll.
+        if(!pending.isEmpty()) {
+            schedule();
+        }
+    }
+
+    /**
+     * Hand back the text printed by a command once the journal has it on
+     * the disk.
+     */
+    private void reply(final PendingCommand command, final String text)
+    {
+        journal.sync().whenComplete(new BiConsumer<Void, Throwable>() {
+                public void accept(Void done, Throwable failure) {
+                    if(failure == null) {
+                        command.result.complete(text);
+                    } else {
+                        command.result.completeExceptionally(failure);
+                    }
+                }
+            });
+    }
+
+    /**
+     * A line of user input waiting to be executed, or a request to
+     * hibernate or to close the journal.
+     */
+    private static class PendingCommand
+    {
+        private static final int INPUT = 0, HIBERNATE = 1, CLOSE = 2;
+
+        private String text;
+        private int kind;
+        private CompletableFuture<String> result = new CompletableFuture<>();
+
+        private PendingCommand(String text, int kind)
+        {
+            this.text = text;
+            this.kind = kind;
+        }
+    }
+}
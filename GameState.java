@@ -0,0 +1,163 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * The state of a game written as a list of numbers: the room the player
+ * is in, the flags of the game, and every item and character that is not
+ * as it was at the start (see Game.getState). Two games in the same
+ * state give the same list, however they got there, so the list can be
+ * used as a key, for example by the Solver to recognise states it has
+ * already seen. A game can also be put back into a state (Game.setState).
+ *
+ * Rooms, items and characters are written as their numbers in the world
+ * file, so a state means the same in every game of that world.
+ *
+ * A state is packed into a few bytes (toBytes): each number takes one
+ * byte if it is small (below 64, or -1), two if it is below 8192, and so
+ * on. Flags are packed 32 to a number. The key of a state is a String of
+ * those bytes, which is small and remembers its hash code.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class GameState
+{
+    private int[] values;
+    private int size;
+    private String key;
+
+    /**
+     * Create an empty state.
+     */
+    public GameState()
+    {
+        values = new int[16];
+    }
+
+    /**
+     * Unpack a state from the bytes made by toBytes.
+     * @throws IllegalArgumentException if the bytes are not a state.
+     */
+    public static GameState fromBytes(byte[] bytes)
+    {
+        GameState state = new GameState();
+        int position = 0;
+        while(position < bytes.length) {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                if(position == bytes.length || shift > 28) {
+                    throw new IllegalArgumentException("The bytes are not a game state.");
+                }
+                b = bytes[position++];
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while(b < 0);
+            // small negative numbers (like -1 for "none") are small too.
+            state.add((value >>> 1) ^ -(value & 1));
+        }
+        return state;
+    }
+
+    /**
+     * @return The state with the key "key" (see getKey).
+     */
+    public static GameState fromKey(String key)
+    {
+        return fromBytes(key.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Add a number to the state.
+     */
+    public void add(int value)
+    {
+        if(size == values.length) {
+            values = Arrays.copyOf(values, 2 * size);
+        }
+        values[size++] = value;
+        key = null;
+    }
+
+    /**
+     * Change number "index" of the state.
+     */
+    public void set(int index, int value)
+    {
+        values[index] = value;
+        key = null;
+    }
+
+    /**
+     * Add flags to the state, 32 to a number.
+     */
+    public void addFlags(boolean... flags)
+    {
+        for(int i = 0; i < flags.length; i += 32) {
+            int bits = 0;
+            for(int j = i; j < flags.length && j < i + 32; j++) {
+                if(flags[j]) {
+                    bits |= 1 << (j - i);
+                }
+            }
+            add(bits);
+        }
+    }
+
+    /**
+     * @return The number of numbers in the state.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return Number "index" of the state.
+     */
+    public int get(int index)
+    {
+        return values[index];
+    }
+
+    /**
+     * @return Flag "flag" of the flags added by addFlags, starting at
+     * number "index".
+     */
+    public boolean getFlag(int index, int flag)
+    {
+        return (values[index + flag / 32] & (1 << (flag % 32))) != 0;
+    }
+
+    /**
+     * @return The state packed into bytes.
+     */
+    public byte[] toBytes()
+    {
+        byte[] bytes = new byte[5 * size];
+        int length = 0;
+        for(int i = 0; i < size; i++) {
+            int value = (values[i] << 1) ^ (values[i] >> 31);
+            while((value & ~0x7f) != 0) {
+                bytes[length++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+        return Arrays.copyOf(bytes, length);
+    }
+
+    /**
+     * @return The state as a String, to be used as a key.
+     */
+    public String getKey()
+    {
+        if(key == null) {
+            key = new String(toBytes(), StandardCharsets.ISO_8859_1);
+        }
+        return key;
+    }
+}
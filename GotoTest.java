@@ -0,0 +1,90 @@
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * Tests of the "goto" command. There is no test framework in the
+ * project: run the main method, which prints "GotoTest: OK", or fails
+ * with the first check that does not hold.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class GotoTest
+{
+    public static void main(String args[]) {
+        gotoByDisplayName();
+        gotoByPrefixOrMisspeltName();
+        gotoById();
+        gotoAmbiguousName();
+        System.out.println("GotoTest: OK");
+    }
+
+    /**
+     * A room can be named by its description, of several words, with or
+     * without an article or punctuation.
+     */
+    private static void gotoByDisplayName()
+    {
+        Game game = newGame();
+        String text = game.updateGameState("goto computing lab");
+        check(text.contains("You are in the Computing Lab."), "goto computing lab");
+        check(text.contains("You go east, east."), "the directions taken are told");
+        text = game.updateGameState("goto the hallway lower ground");
+        check(text.contains("You are in the Hallway (Lower Ground)."), "goto the hallway lower ground");
+        text = game.updateGameState("goto Physics Lab");
+        check(text.contains("You are in the Physics Lab."), "goto Physics Lab");
+    }
+
+    /**
+     * The start of a description is enough if only one room has it, and
+     * a small spelling mistake is forgiven.
+     */
+    private static void gotoByPrefixOrMisspeltName()
+    {
+        Game game = newGame();
+        String text = game.updateGameState("goto libr");
+        check(text.contains("You are in the Library."), "goto libr");
+        text = game.updateGameState("goto cafeterya");
+        check(text.contains("You are in the Cafeteria."), "goto cafeterya");
+    }
+
+    /**
+     * A room can still be named by its id in the world file.
+     */
+    private static void gotoById()
+    {
+        Game game = newGame();
+        String text = game.updateGameState("goto complab");
+        check(text.contains("You are in the Computing Lab."), "goto complab");
+    }
+
+    /**
+     * A name that fits several rooms does not move the player.
+     */
+    private static void gotoAmbiguousName()
+    {
+        Game game = newGame();
+        String text = game.updateGameState("goto hallway");
+        check(text.contains("You don't know the way to hallway."), "goto hallway");
+    }
+
+    /**
+     * @return A new game, whose player has been named.
+     */
+    private static Game newGame()
+    {
+        Game game = new Game();
+        game.start();
+        game.updateGameState("Tester");
+        return game;
+    }
+
+    /**
+     * Fail with "message" unless "condition" holds.
+     */
+    private static void check(boolean condition, String message)
+    {
+        if(!condition) {
+            throw new AssertionError("GotoTest: " + message);
+        }
+    }
+}
@@ -1,3 +1,7 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * This class is part of the "World of Tomorrow" game.
  *
@@ -12,6 +16,9 @@ public class Item
 {
     private String nameDisplayed, description;
     private double weight;
+    private ArrayList<String> aliases = new ArrayList<>();
+    private int symbol;
+    private int[] aliasSymbols = new int[0];
     private boolean canBePickedUp, canBeUsed, canBeUsedOn;
     
     /**
@@ -20,6 +27,7 @@ public class Item
     public Item(String nameDisplayed, String description, double weight)
     {
         this.nameDisplayed = nameDisplayed;
+        symbol = Symbols.intern(nameDisplayed);
         this.description = description;
         this.weight = weight;
         this.canBePickedUp = canBePickedUp;
@@ -43,7 +51,53 @@ public class Item
      * @return the name of the item in lower case
      */
     public String getName() {
-        return nameDisplayed.toLowerCase();
+        return Symbols.getName(symbol);
+    }
+
+    /**
+     * @return the symbol of the name of the item (see Symbols).
+     */
+    public int getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return true if "symbol" is the name or an alias of the item.
+     */
+    public boolean isCalled(int symbol) {
+        if(symbol == this.symbol) {
+            return true;
+        }
+        for(int alias : aliasSymbols) {
+            if(alias == symbol) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Adds another name by which the item can be called (for example
+     * "pizza" for the food). Must be added before the item is put anywhere.
+     */
+    public void addAlias(String alias) {
+        aliases.add(alias.toLowerCase());
+        aliasSymbols = Arrays.copyOf(aliasSymbols, aliasSymbols.length + 1);
+        aliasSymbols[aliasSymbols.length - 1] = Symbols.intern(alias);
+    }
+    
+    /**
+     * @return the other names of the item, in lower case.
+     */
+    public List<String> getAliases() {
+        return aliases;
+    }
+
+    /**
+     * @return the symbols of the other names of the item.
+     */
+    public int[] getAliasSymbols() {
+        return aliasSymbols;
     }
     
     /**
@@ -1,70 +1,162 @@
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * This class is part of the "World of Tomorrow" game. 
- * 
- * This class stores characters in a HashMap, and
- * returns displayed names and image file names.
- * 
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * This class stores items in a SymbolMap, so they are listed in the
+ * order in which they were added. The total weight and the listing of
+ * the item names are kept up to date when items are put or removed, so
+ * asking for them does not go through all items.
+ *
+ * Items are found by the symbol (see Symbols) of their name or of any
+ * of their aliases; both are kept in SymbolMaps, so finding an item
+ * takes the same time however many items there are, and needs no
+ * String to be hashed.
+ *
  * @author Sarunas Djacenko
  * @version 2017.12.08
  */
 
 public class Items
 {
-    private HashMap items = new HashMap();
-    
+    private SymbolMap<Item> items = new SymbolMap<>();
+    private SymbolMap<Item> aliases = new SymbolMap<>();
+    private double totalWeight;
+    private String names;   // listing of the names, null after a change
+    private WordTrie<String> vocabulary;
+
     /**
      * Create a new item list.
      */
     public Items()
     {
     }
-    
+
     /**
-     * Removes an Item from the HashMap
+     * Removes the Item with the name (or alias) "symbol".
      */
-    public Item remove(String name) {
-        return (Item) items.remove(name);
+    public Item remove(int symbol) {
+        Item item = get(symbol);
+        if(item != null) {
+            items.remove(item.getSymbol());
+            removeAliases(item);
+            totalWeight -= item.getWeight();
+            changed();
+        }
+        return item;
     }
-    
+
     /**
-     * Puts an Item in the HashMap, with key item name, and value Item.
+     * Puts an Item in the list, under its name and its aliases. An item
+     * with the same name is replaced, aliases and all.
      */
-    public void put(String name, Item value) {
-        items.put(name, value);
+    public void put(Item value) {
+        Item previous = items.put(value.getSymbol(), value);
+        if(previous != null) {
+            totalWeight -= previous.getWeight();
+            removeAliases(previous);
+        }
+        totalWeight += value.getWeight();
+        for(int alias : value.getAliasSymbols()) {
+            aliases.put(alias, value);
+        }
+        changed();
     }
-    
+
     /**
-     * @return Item from the HashMap with the name "name".
+     * @return Item from the list with the name (or alias) "symbol", or null.
      */
-    public Item get(String name) {
-        return (Item) items.get(name);
+    public Item get(int symbol) {
+        Item item = items.get(symbol);
+        if(item == null) {
+            item = aliases.get(symbol);
+        }
+        return item;
     }
-        
+
     /**
-     * @return a string listing the items in the list.
+     * @return a string listing the items in the list, or "" if there are none.
      */
-    public String getNames() 
+    public String getNames()
     {
-        String returnString = "";
-        String itemString = "";
-        for(Iterator iter = items.values().iterator(); iter.hasNext(); ) {
-            itemString = ((Item) iter.next()).getName();
-            returnString += " " + itemString.substring(0,1).toUpperCase() + itemString.substring(1);
+        if(names == null) {
+            StringBuilder builder = new StringBuilder();
+            for(int i = 0; i < items.size(); i++) {
+                String itemString = items.getValue(i).getName();
+                builder.append(' ').append(Character.toUpperCase(itemString.charAt(0)))
+                       .append(itemString, 1, itemString.length());
+            }
+            names = builder.toString();
+        }
+        return names;
+    }
+
+    /**
+     * @return the names of the items in the list (in lower case).
+     */
+    public List<String> getNameList() {
+        ArrayList<String> names = new ArrayList<>();
+        for(int i = 0; i < items.size(); i++) {
+            names.add(items.getValue(i).getName());
+        }
+        return names;
+    }
+
+    /**
+     * @return the items in the list, in the order they were put.
+     */
+    public List<Item> getItemList() {
+        ArrayList<Item> list = new ArrayList<>();
+        for(int i = 0; i < items.size(); i++) {
+            list.add(items.getValue(i));
         }
-        
-        return returnString;     
+        return list;
     }
-    
+
+    /**
+     * @return a trie of the item names, to complete or correct what the
+     * user typed. It is built again only after the list has changed.
+     */
+    public WordTrie<String> getVocabulary() {
+        if(vocabulary == null) {
+            vocabulary = new WordTrie<>();
+            for(int i = 0; i < items.size(); i++) {
+                String name = items.getValue(i).getName();
+                vocabulary.put(name, name);
+            }
+            for(int i = 0; i < aliases.size(); i++) {
+                String alias = Symbols.getName(aliases.getKey(i));
+                vocabulary.put(alias, alias);
+            }
+        }
+        return vocabulary;
+    }
+
     /**
      * @return the total weight that the player carries.
      */
     public double getTotalWeight() {
-        double weight = 0;
-        for(Iterator iter = items.values().iterator(); iter.hasNext(); )
-            weight += ((Item) iter.next()).getWeight();
-        return weight;        
+        return totalWeight;
+    }
+
+    /**
+     * Remove the aliases of "item" (but not those that now belong to
+     * another item).
+     */
+    private void removeAliases(Item item) {
+        for(int alias : item.getAliasSymbols()) {
+            if(aliases.get(alias) == item) {
+                aliases.remove(alias);
+            }
+        }
+    }
+
+    /**
+     * Forget the listing and the trie; they are built again when needed.
+     */
+    private void changed() {
+        names = null;
+        vocabulary = null;
     }
 }
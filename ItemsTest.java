@@ -0,0 +1,68 @@
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * Tests of Items. There is no test framework in the project: run the
+ * main method, which prints "ItemsTest: OK", or fails with the first
+ * check that does not hold.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class ItemsTest
+{
+    public static void main(String args[]) {
+        replacingAnItemRemovesItsAliases();
+        replacingKeepsAliasesOfOtherItems();
+        System.out.println("ItemsTest: OK");
+    }
+
+    /**
+     * An item that replaces another with the same name takes its place
+     * under the name; the aliases of the old item no longer find anything.
+     */
+    private static void replacingAnItemRemovesItsAliases()
+    {
+        Items items = new Items();
+        Item lamp = new Item("Lamp", "an old lamp", 1);
+        lamp.addAlias("lantern");
+        items.put(lamp);
+        check(items.get(Symbols.intern("lantern")) == lamp, "the alias finds the item");
+
+        Item newLamp = new Item("Lamp", "a new lamp", 2);
+        newLamp.addAlias("light");
+        items.put(newLamp);
+        check(items.get(Symbols.intern("lamp")) == newLamp, "the name finds the new item");
+        check(items.get(Symbols.intern("light")) == newLamp, "the new alias finds the new item");
+        check(items.get(Symbols.intern("lantern")) == null, "the old alias finds nothing");
+        check(items.getTotalWeight() == 2, "only the new item is weighed");
+        check(items.getVocabulary().get("lantern") == null, "the old alias is not in the vocabulary");
+    }
+
+    /**
+     * Replacing an item does not remove an alias that has been given to
+     * another item since.
+     */
+    private static void replacingKeepsAliasesOfOtherItems()
+    {
+        Items items = new Items();
+        Item rope = new Item("Rope", "a rope", 1);
+        rope.addAlias("line");
+        items.put(rope);
+        Item wire = new Item("Wire", "a wire", 1);
+        wire.addAlias("line");
+        items.put(wire);
+
+        items.put(new Item("Rope", "a longer rope", 1));
+        check(items.get(Symbols.intern("line")) == wire, "the alias still finds the other item");
+    }
+
+    /**
+     * Fail with "message" unless "condition" holds.
+     */
+    private static void check(boolean condition, String message)
+    {
+        if(!condition) {
+            throw new AssertionError("ItemsTest: " + message);
+        }
+    }
+}
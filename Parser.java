@@ -1,31 +1,86 @@
-import java.util.Scanner;
+import java.util.Arrays;
 
 /**
- * This class is part of the "World of Tomorrow" application. 
- * 
+ * This class is part of the "World of Tomorrow" application.
+ *
  * This parser reads user input and tries to interpret it as an "Adventure"
  * command. Every time it is called it reads a line from the terminal and
- * tries to interpret the line as a two word command. It returns the command
+ * tries to interpret the line as a command. It returns the command
  * as an object of class Command.
  *
  * The parser has a set of known command words. It checks user input against
  * the known commands, and if the input is not one of the known commands, it
  * returns a command object that is marked as an unknown command.
- * 
+ *
+ * Commands may be longer than two or three words, for example
+ * "give the blue book to librarian". Words like "the" are skipped, and a
+ * word like "to" separates the object of the command from its target.
+ * The last word before "to" is the object (second word), the last word
+ * after it is the target (third word).
+ *
+ * The line is split into words by hand. Words that the parser knows
+ * (command words, and the names added with addWord) are found in its
+ * Vocabulary without creating new Strings. The names added with addWord
+ * are also interned (see Symbols), so the command carries the symbols
+ * of its second and third word.
+ *
  * @author  Sarunas Djacenko
  * @version 2017.12.08
  */
-public class Parser 
+public class Parser
 {
+    // words that are skipped, and words that separate object and target.
+    private static final String[] ARTICLES = {"the", "a", "an", "some"};
+    private static final String[] PREPOSITIONS = {"to", "on", "at", "with", "in", "into", "onto"};
+
     private CommandWords commands;  // holds all valid command words
-    private Scanner reader;         // source of command input
+    private Vocabulary vocabulary;  // all words known to the parser
+    private int[] starts, ends;     // start and end of each word on the line
+    private int[] ids;              // vocabulary id of each word, or -1
+    private int[] symbols;          // symbol of each vocabulary word, or -1
 
     /**
      * Create a parser to read from the terminal window.
      */
-    public Parser() 
+    public Parser()
     {
         commands = new CommandWords();
+        vocabulary = new Vocabulary();
+        // articles and prepositions get the first ids (see isArticle).
+        for(String word : ARTICLES) {
+            vocabulary.add(word);
+        }
+        for(String word : PREPOSITIONS) {
+            vocabulary.add(word);
+        }
+        for(CommandWord command : CommandWord.values()) {
+            if(command != CommandWord.UNKNOWN) {
+                vocabulary.add(command.toString());
+            }
+        }
+        symbols = new int[vocabulary.size()];
+        Arrays.fill(symbols, -1);
+        starts = new int[8];
+        ends = new int[8];
+        ids = new int[8];
+    }
+
+    /**
+     * Add a word that may be typed by the user, such as the name of an
+     * item, a character or an exit. The word is not added to the symbol
+     * table: names of the world are put there when the world file is read
+     * (see WorldFile), and other words, such as the name of the player,
+     * have no symbol.
+     */
+    public void addWord(String word)
+    {
+        int id = vocabulary.add(word);
+        if(id >= symbols.length) {
+            int size = symbols.length;
+            symbols = Arrays.copyOf(symbols, Math.max(2 * size, id + 1));
+            Arrays.fill(symbols, size, symbols.length, -1);
+        }
+        symbols[id] = Symbols.lookup(word.toLowerCase());
     }
 
     /**
@@ -34,31 +89,154 @@ public class Parser
     public String getCommandList() {
         return commands.getCommandList();
     }
-    
+
     /**
      * @return The next command from the user.
      */
-    public Command getCommand(String text) 
+    public Command getCommand(String text)
+    {
+        int count = split(text);
+        if(count == 0) {
+            return new Command(CommandWord.UNKNOWN, null, null);
+        }
+
+        String[] words = new String[count - 1];
+        int preposition = -1;
+        for(int i = 1; i < count; i++) {
+            words[i - 1] = getWord(text, i);
+            if(preposition < 0 && isPreposition(i)) {
+                preposition = i;
+            }
+        }
+
+        int word2 = -1;
+        int word3 = -1;
+        if(preposition < 0) {
+            // "give cheese chef": the next two words.
+            word2 = findWord(1, count, 0);
+            word3 = findWord(1, count, 1);
+        } else {
+            // "give the blue book to librarian": last word of each part.
+            word2 = findLastWord(1, preposition);
+            word3 = findLastWord(preposition + 1, count);
+            if(word2 < 0) {
+                // "talk to chef"
+                word2 = word3;
+                word3 = -1;
+            }
+        }
+
+        return new Command(commands.getCommandWord(getWord(text, 0)),
+            word2 < 0 ? null : words[word2 - 1], word3 < 0 ? null : words[word3 - 1],
+            words, getSymbol(words, word2), getSymbol(words, word3));
+    }
+
+    /**
+     * Find the start, end and vocabulary id of every word on the line.
+     * @return The number of words.
+     */
+    private int split(String text)
+    {
+        int count = 0;
+        int i = 0;
+        int length = text.length();
+        while(i < length) {
+            while(i < length && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if(i == length) {
+                break;
+            }
+            if(count == starts.length) {
+                starts = Arrays.copyOf(starts, 2 * count);
+                ends = Arrays.copyOf(ends, 2 * count);
+                ids = Arrays.copyOf(ids, 2 * count);
+            }
+            starts[count] = i;
+            while(i < length && !Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            ends[count] = i;
+            ids[count] = vocabulary.lookup(text, starts[count], i);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return Word number "index" of the line, in lower case. Known words
+     * are taken from the vocabulary, only unknown words are copied.
+     */
+    private String getWord(String text, int index)
+    {
+        if(ids[index] >= 0) {
+            return vocabulary.getWord(ids[index]);
+        }
+        return text.substring(starts[index], ends[index]).toLowerCase();
+    }
+
+    /**
+     * @return The symbol of word number "index" of "words", or -1 if the
+     * word is not a known name (or if "index" is -1). Names added with
+     * addWord are found without hashing; other words (such as aliases)
+     * are looked up in the symbol table.
+     */
+    private int getSymbol(String[] words, int index)
+    {
+        if(index < 0) {
+            return -1;
+        }
+        int id = ids[index];
+        if(id >= 0 && id < symbols.length && symbols[id] >= 0) {
+            return symbols[id];
+        }
+        return Symbols.lookup(words[index - 1]);
+    }
+
+    /**
+     * @return The number of the "n"th word between "from" and "to" which
+     * is not an article, or -1 if there is none.
+     */
+    private int findWord(int from, int to, int n)
     {
-        String word1 = null;
-        String word2 = null;
-        String word3 = null;
-
-        String inputLine = text;
-
-        // Find up to two words on the line.
-        Scanner tokenizer = new Scanner(inputLine);
-        if(tokenizer.hasNext()) {
-            word1 = tokenizer.next().toLowerCase(); // get first word
-            if(tokenizer.hasNext()) {
-                word2 = tokenizer.next().toLowerCase(); // get second word
-                if(tokenizer.hasNext()) {
-                    word3 = tokenizer.next().toLowerCase(); // get third word
-                    // note: we just ignore the rest of the input line.
+        for(int i = from; i < to; i++) {
+            if(!isArticle(i)) {
+                if(n == 0) {
+                    return i;
                 }
+                n--;
             }
         }
+        return -1;
+    }
+
+    /**
+     * @return The number of the last word between "from" and "to" which
+     * is not an article, or -1 if there is none.
+     */
+    private int findLastWord(int from, int to)
+    {
+        for(int i = to - 1; i >= from; i--) {
+            if(!isArticle(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
 
-        return new Command(commands.getCommandWord(word1), word2, word3);
+    /**
+     * @return true if word number "index" is an article ("the", "a", ...).
+     */
+    private boolean isArticle(int index)
+    {
+        return ids[index] >= 0 && ids[index] < ARTICLES.length;
+    }
+
+    /**
+     * @return true if word number "index" is a preposition ("to", "on", ...).
+     */
+    private boolean isPreposition(int index)
+    {
+        return ids[index] >= ARTICLES.length && ids[index] < ARTICLES.length + PREPOSITIONS.length;
     }
 }
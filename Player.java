@@ -1,3 +1,7 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * This class is part of the "World of Tomorrow" game. 
  * 
@@ -6,10 +10,15 @@
  */
 public class Player
 {
-    private String nameDisplayed, inventory, fileName;
+    private String nameDisplayed, name, inventory, fileName;
+    private Dialogue dialogue;
+    private int dialogueState;
     private Room currentRoom;
     private Item itemWanted, itemOwned1, itemOwned2;
     private Items items = new Items();
+    private ArrayList<String> aliases = new ArrayList<>();
+    private int symbol;
+    private int[] aliasSymbols = new int[0];
     private int maxWeight = 99;
     private boolean itemPlacedRoom;
     
@@ -20,19 +29,63 @@ public class Player
     public Player(String nameDisplayed, String fileName, Item itemWanted, Item itemOwned1, Item itemOwned2)
     {
         this.nameDisplayed = nameDisplayed;
+        symbol = Symbols.intern(nameDisplayed);
+        name = Symbols.getName(symbol);
         this.fileName = fileName;
         this.itemWanted = itemWanted;
         this.itemOwned1 = itemOwned1;
         this.itemOwned2 = itemOwned2;
         
         if(itemOwned1 != null) {
-            items.put(itemOwned1.getName(), itemOwned1);
+            items.put(itemOwned1);
         }
         if(itemOwned2 != null) {
-            items.put(itemOwned2.getName(), itemOwned2);
+            items.put(itemOwned2);
         }
     }
 
+    /**
+     * Constructor for the player of the user, whose name is chosen by the
+     * user. The name is not added to the symbol table (see Symbols), which
+     * only holds the names of the world, so the symbol of this player is -1.
+     * Parameters are displayed name and image file name.
+     */
+    public Player(String nameDisplayed, String fileName)
+    {
+        this.nameDisplayed = nameDisplayed;
+        name = nameDisplayed.toLowerCase();
+        symbol = -1;
+        this.fileName = fileName;
+    }
+
+    /**
+     * Set what this character says when talked to (may be null).
+     */
+    public void setDialogue(Dialogue dialogue) {
+        this.dialogue = dialogue;
+    }
+
+    /**
+     * @return what this character says when talked to, or null.
+     */
+    public Dialogue getDialogue() {
+        return dialogue;
+    }
+
+    /**
+     * Set the state of this character's dialogue (0 at the start).
+     */
+    public void setDialogueState(int dialogueState) {
+        this.dialogueState = dialogueState;
+    }
+
+    /**
+     * @return the state of this character's dialogue.
+     */
+    public int getDialogueState() {
+        return dialogueState;
+    }
+
     /**
      * Enter the given room.
      */
@@ -75,13 +128,23 @@ public class Player
         itemWanted = item;
     }
 
+    /**
+     * Set the items wanted and owned, without moving any items (when a
+     * game is put back into a saved state).
+     */
+    public void setItems(Item itemWanted, Item itemOwned1, Item itemOwned2) {
+        this.itemWanted = itemWanted;
+        this.itemOwned1 = itemOwned1;
+        this.itemOwned2 = itemOwned2;
+    }
+
     /**
      * set Item Owned (1) to Item Wanted (when received).
      */
     public void setItemOwned1(Item item) {
         itemOwned1 = item;
         if(itemOwned1 != null){
-            items.put(itemOwned1.getName(), itemOwned1);
+            items.put(itemOwned1);
         }
     }
     
@@ -92,7 +155,7 @@ public class Player
     public void setItemOwned2(Item item) {
         itemOwned2 = item;
         if(itemOwned2 != null){
-            items.put(itemOwned2.getName(), itemOwned2);
+            items.put(itemOwned2);
         }
     }
     
@@ -114,7 +177,47 @@ public class Player
      * @return the name of the player in lower case.
      */
     public String getName() {
-        return nameDisplayed.toLowerCase();
+        return name;
+    }
+
+    /**
+     * @return the symbol of the name of the player (see Symbols), or -1
+     * for the player of the user.
+     */
+    public int getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Adds another name by which the character can be called.
+     * Must be added before the character is put into a room.
+     */
+    public void addAlias(String alias) {
+        aliases.add(alias.toLowerCase());
+        aliasSymbols = Arrays.copyOf(aliasSymbols, aliasSymbols.length + 1);
+        aliasSymbols[aliasSymbols.length - 1] = Symbols.intern(alias);
+    }
+    
+    /**
+     * @return the other names of the character, in lower case.
+     */
+    public List<String> getAliases() {
+        return aliases;
+    }
+
+    /**
+     * @return the symbols of the other names of the character.
+     */
+    public int[] getAliasSymbols() {
+        return aliasSymbols;
+    }
+    
+    /**
+     * @return the item the player owns with the name (or alias) "symbol",
+     * or null if the player does not own it.
+     */
+    public Item getItem(int symbol) {
+        return items.get(symbol);
     }
     
     /**
@@ -124,11 +227,25 @@ public class Player
         return items.getNames();
     }
     
+    /**
+     * @return the items the player owns, in the order they were received.
+     */
+    public List<Item> getItemList() {
+        return items.getItemList();
+    }
+    
+    /**
+     * @return a trie of the names of the items the player owns.
+     */
+    public WordTrie<String> getVocabulary() {
+        return items.getVocabulary();
+    }
+    
     /**
      * @return a string describing the items that the player carries.
      */
     public String getItemsString() {
-        if (items.getNames() == "") {
+        if (items.getNames().isEmpty()) {
             inventory = "You are not carrying any items.";
         } else {
             inventory = "You are carrying:" + items.getNames();
@@ -150,10 +267,10 @@ public class Player
      * Tries to pick up the item from the current room.
      * @return If successful, this method will return the item that was picked up.
      */
-    public Item pickUpItem(String itemName) {
-        Item item = currentRoom.removeItem(itemName);
+    public Item pickUpItem(int itemSymbol) {
+        Item item = currentRoom.removeItem(itemSymbol);
         if(item != null) {
-            items.put(item.getName(), item);
+            items.put(item);
         }
         return item;
     }
@@ -162,8 +279,8 @@ public class Player
      * Tries to drop an item into the current room.
      * @return If successful, this method will return the item that was dropped.
      */
-    public Item dropItem(String itemName) {
-        Item item = items.remove(itemName);
+    public Item dropItem(int itemSymbol) {
+        Item item = items.remove(itemSymbol);
         if(item != null) {
             currentRoom.addItem(item);
         }
@@ -174,10 +291,10 @@ public class Player
      * Tries to give an item to a character.
      * @return If successful, this method will return the item that was given away.
      */
-    public Item giveItem(String itemName, Player character) {
-        Item item = items.remove(itemName);
+    public Item giveItem(int itemSymbol, Player character) {
+        Item item = items.remove(itemSymbol);
         if(item != null) {
-            character.items.put(item.getName(), item);
+            character.items.put(item);
         }
         return item;
     }
@@ -188,14 +305,15 @@ public class Player
      */
     public Item getItemBack(Player character) {
         itemPlacedRoom = false;
-        Item item = character.items.get(character.getItemOwned2().getName());
+        Item item = character.items.get(character.getItemOwned2().getSymbol());
         if(item != null) {
             if(canReceiveItem(character) == true) {
-                items.put(item.getName(), item);
+                items.put(item);
             } else {
                 currentRoom.addItem(item);
                 itemPlacedRoom = true;
             }
+            character.items.remove(item.getSymbol());
             character.setItemOwned2(null);
         }
         return item;
@@ -210,11 +328,26 @@ public class Player
         return itemPlacedRoom;
     }
     
+    /**
+     * Puts the item in the player's bag, however heavy it is.
+     */
+    public void addItem(Item item) {
+        items.put(item);
+    }
+
+    /**
+     * Takes the item out of the player's bag.
+     * @return The item, or null if the player does not own it.
+     */
+    public Item removeItem(int itemSymbol) {
+        return items.remove(itemSymbol);
+    }
+    
     /**
      * Uses the item.
      */
-    public Item useItem(String itemName) {
-        Item item = items.remove(itemName);
+    public Item useItem(int itemSymbol) {
+        Item item = items.remove(itemSymbol);
         return item;
     }
     
@@ -222,9 +355,9 @@ public class Player
      * Checks if we can pick up the item. This depends on whether the item 
      * actually is in the current room and if it is not too heavy.
      */
-    public boolean canPickItem(String itemName) {
+    public boolean canPickItem(int itemSymbol) {
         boolean canPick = true;
-        Item item = currentRoom.getItem(itemName);
+        Item item = currentRoom.getItem(itemSymbol);
         if(item != null) {
             double totalWeight = items.getTotalWeight() + item.getWeight();
             if(totalWeight > maxWeight) {
@@ -240,7 +373,7 @@ public class Player
      */
     public boolean canReceiveItem(Player character) {
         boolean canPick = true;
-        Item item = character.items.get(character.getItemOwned2().getName());
+        Item item = character.items.get(character.getItemOwned2().getSymbol());
         double totalWeight = items.getTotalWeight() + item.getWeight();
         if(totalWeight > maxWeight) {
             canPick = false;
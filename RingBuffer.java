@@ -0,0 +1,115 @@
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * A stack that holds at most a fixed number of elements. The elements are
+ * kept in an array used as a ring: when the stack is full, pushing an
+ * element replaces the oldest one. However long a game goes on, the way
+ * back (see Game.goBack) and the states kept for undo never take more
+ * than their capacity.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class RingBuffer<E>
+{
+    private Object[] elements;
+    private int first;      // position of the oldest element
+    private int size;
+
+    /**
+     * Create an empty stack for at most "capacity" elements.
+     */
+    public RingBuffer(int capacity)
+    {
+        elements = new Object[capacity];
+    }
+
+    /**
+     * Put an element on top of the stack. If the stack is full, the
+     * oldest element is forgotten.
+     */
+    public void push(E element)
+    {
+        if(elements.length == 0) {
+            return;
+        }
+        if(size == elements.length) {
+            elements[first] = element;
+            first = (first + 1) % elements.length;
+        } else {
+            elements[(first + size) % elements.length] = element;
+            size++;
+        }
+    }
+
+    /**
+     * Take the newest element off the stack.
+     * @return The element, or null if the stack is empty.
+     */
+    public E pop()
+    {
+        if(size == 0) {
+            return null;
+        }
+        int last = (first + size - 1) % elements.length;
+        E element = get(size - 1);
+        elements[last] = null;
+        size--;
+        return element;
+    }
+
+    /**
+     * @return The newest element, or null if the stack is empty.
+     */
+    public E peek()
+    {
+        return size == 0 ? null : get(size - 1);
+    }
+
+    /**
+     * @return Element "index", counting from the oldest (0).
+     */
+    @SuppressWarnings("unchecked")
+    public E get(int index)
+    {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return (E) elements[(first + index) % elements.length];
+    }
+
+    /**
+     * @return The number of elements on the stack.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return The largest number of elements the stack holds.
+     */
+    public int getCapacity()
+    {
+        return elements.length;
+    }
+
+    /**
+     * @return true if there are no elements on the stack.
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Remove all elements.
+     */
+    public void clear()
+    {
+        while(size > 0) {
+            pop();
+        }
+        first = 0;
+    }
+}
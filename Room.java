@@ -1,7 +1,5 @@
-import java.util.Set;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Class Room - a room in an adventure game.
@@ -10,8 +8,19 @@ import java.util.Iterator;
  *
  * A "Room" represents one location in the scenery of the game.  It is 
  * connected to other rooms via exits.  The exits are labelled north, 
- * east, south, west, upstairs, downstairs and portal.  For each direction, the room stores a reference
- * to the neighboring room, or null if there is no exit in that direction.
+ * east, south, west, upstairs and downstairs.  For each Direction, the
+ * room stores a reference to the neighboring room, or null if there is
+ * no exit in that direction. These are kept in a small array, made when
+ * the first exit is set. Other exits (such as "hole" and "portal") are
+ * rare, and are kept in a SymbolMap that is only made when needed.
+ * 
+ * A room made by a World may have exits that are only known by the id of
+ * the room they lead to (see setExitId). The room is asked from the World
+ * the first time the exit is used.
+ * 
+ * Every change to a room (exits, items, characters) increases its version
+ * number. The long description is built only when the version has
+ * changed since it was last built; otherwise the same String is returned.
  * 
  * @author Sarunas Djacenko
  * @version 2017.12.08
@@ -19,9 +28,18 @@ import java.util.Iterator;
 public class Room 
 {
     private String description, fileName, itemList, characterList;
-    private HashMap<String, Room> exits;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    // an exit is a Room, or the id (a String) of a room not made yet.
+    private Object[] exits;                 // by Direction, or null if none
+    private SymbolMap<Object> otherExits;   // other exits, or null if none
+    private World world;
+    private String id;  // the id of the room in its World, or null
     private Items items;
     private Characters characters;
+    private WordTrie<String> vocabulary;
+    private String longDescription, exitString;
+    private int version, descriptionVersion, vocabularyVersion;
 
     /**
      * Create a room described "description". Initially, it has
@@ -33,9 +51,11 @@ public class Room
     {
         this.description = description;
         this.fileName = fileName;
-        exits = new HashMap<>();
         items = new Items();
         characters = new Characters();
+        // nothing has been built yet.
+        descriptionVersion = -1;
+        vocabularyVersion = -1;
     }
     
     /**
@@ -46,7 +66,63 @@ public class Room
      */
     public void setExit(String direction, Room neighbor) 
     {
-        exits.put(direction, neighbor);
+        putExit(direction, neighbor);
+        if(world != null && neighbor != null && neighbor.id != null) {
+            world.exitAdded(this, direction, neighbor);
+        }
+    }
+
+    /**
+     * Define an exit leading to the room with the id "roomId" of the
+     * World this room belongs to. The room is only made when the exit
+     * is first used.
+     * @param direction The direction of the exit.
+     * @param roomId The id of the room to which the exit leads.
+     */
+    public void setExitId(String direction, String roomId)
+    {
+        putExit(direction, roomId);
+    }
+
+    /**
+     * Store an exit (a Room or the id of a room) in the array if
+     * "direction" is a Direction, otherwise in the other exits.
+     */
+    private void putExit(String direction, Object exit)
+    {
+        int symbol = Symbols.intern(direction);
+        Direction known = Direction.fromSymbol(symbol);
+        if(known != null) {
+            if(exits == null) {
+                exits = new Object[DIRECTIONS.length];
+            }
+            exits[known.ordinal()] = exit;
+        } else {
+            if(otherExits == null) {
+                otherExits = new SymbolMap<>();
+            }
+            otherExits.put(symbol, exit);
+        }
+        exitString = null;
+        version++;
+    }
+
+    /**
+     * Set the World this room belongs to, which makes the rooms its
+     * exits lead to (see setExitId), and the id of the room in it.
+     */
+    public void setWorld(World world, String id)
+    {
+        this.world = world;
+        this.id = id;
+    }
+
+    /**
+     * @return The id of the room in its World, or null if it has none.
+     */
+    public String getId()
+    {
+        return id;
     }
 
     /**
@@ -91,18 +167,34 @@ public class Room
      */
     public String getLongDescription()
     {
-        if (items.getNames() == "") {
+        if(descriptionVersion == version) {
+            return longDescription;
+        }
+        String itemNames = items.getNames();
+        if (itemNames.isEmpty()) {
             itemList = "\nNo items in the room.";
         } else {
-            itemList = "\nItems in the room:" + items.getNames();
+            itemList = "\nItems in the room:" + itemNames;
         }
-        if (characters.getNamesDisplayed() == "") {
+        String characterNames = characters.getNamesDisplayed();
+        if (characterNames.isEmpty()) {
             characterList = "\nNo characters in the room.";
         } else {
-            characterList = "\nCharacters in the room:" + characters.getNamesDisplayed();
+            characterList = "\nCharacters in the room:" + characterNames;
         }
         
-        return "You are in the " + description + ".\n" + getExitString() + itemList + characterList;
+        longDescription = "You are in the " + description + ".\n" + getExitString() + itemList + characterList;
+        descriptionVersion = version;
+        return longDescription;
+    }
+    
+    /**
+     * @return The version number of the room. It increases every time an
+     * exit, item or character is added, or an item is removed.
+     */
+    public int getVersion()
+    {
+        return version;
     }
     
     /**
@@ -112,23 +204,96 @@ public class Room
     {
         return characters.getFileNames();
     }
+
+    /**
+     * @return The number of characters in the room.
+     */
+    public int getCharacterCount()
+    {
+        return characters.size();
+    }
+
+    /**
+     * @return The image file name of character number "index" in the room
+     * (in the order they were added).
+     */
+    public String getCharacterFileName(int index)
+    {
+        return characters.getByIndex(index).getFileName();
+    }
     
     /**
     * Return a description of the room’s exits,
-    * for example, "Exits: north west".
+    * for example, "Exits: north west". Built again only after setExit.
     * @return A description of the available exits.
     */
     public String getExitString()
     {
-        String returnString = "Exits:";
-        Set<String> keys = exits.keySet();
-        for(String exit : keys) {
-            String capitalizedExit = exit.substring(0,1).toUpperCase() + exit.substring(1);
-            returnString += " " + capitalizedExit;
+        if(exitString != null) {
+            return exitString;
+        }
+        StringBuilder builder = new StringBuilder("Exits:");
+        if(exits != null) {
+            for(Direction direction : DIRECTIONS) {
+                if(exits[direction.ordinal()] != null) {
+                    builder.append(' ').append(direction.getLabel());
+                }
+            }
         }
-        return returnString;
+        if(otherExits != null) {
+            for(int i = 0; i < otherExits.size(); i++) {
+                String exit = Symbols.getName(otherExits.getKey(i));
+                builder.append(' ').append(Character.toUpperCase(exit.charAt(0)))
+                       .append(exit, 1, exit.length());
+            }
+        }
+        exitString = builder.toString();
+        return exitString;
     }
     
+    /**
+     * Return the room that is reached if we go from this room in
+     * "direction". If there is no room in that direction, return null.
+     * @param direction The exit's direction.
+     * @return The room in the given direction.
+     */
+    public Room getExit(Direction direction)
+    {
+        if(exits == null) {
+            return null;
+        }
+        Object exit = exits[direction.ordinal()];
+        if(exit instanceof String) {
+            // the same exit as before, so the version does not change.
+            exit = world.getRoom((String) exit);
+            exits[direction.ordinal()] = exit;
+        }
+        return (Room) exit;
+    }
+
+    /**
+     * Return the room that is reached if we go from this room in direction
+     * "direction". If there is no room in that direction, return null.
+     * @param direction The symbol of the exit's direction (see Symbols).
+     * @return The room in the given direction.
+     */
+    public Room getExit(int direction)
+    {
+        Direction known = Direction.fromSymbol(direction);
+        if(known != null) {
+            return getExit(known);
+        }
+        if(otherExits == null) {
+            return null;
+        }
+        Object exit = otherExits.get(direction);
+        if(exit instanceof String) {
+            exit = world.getRoom((String) exit);
+            otherExits.put(direction, exit);
+        }
+        return (Room) exit;
+    }
+
     /**
      * Return the room that is reached if we go from this room in direction
      * "direction". If there is no room in that direction, return null.
@@ -137,34 +302,163 @@ public class Room
      */
     public Room getExit(String direction)
     {
-        return exits.get(direction);
+        return getExit(Symbols.lookup(direction));
+    }
+
+    /**
+     * @return The directions of the exits of this room, in the same order
+     * as in the exit string.
+     */
+    public List<String> getExitDirections()
+    {
+        ArrayList<String> directions = new ArrayList<>();
+        if(exits != null) {
+            for(Direction direction : DIRECTIONS) {
+                if(exits[direction.ordinal()] != null) {
+                    directions.add(direction.toString());
+                }
+            }
+        }
+        if(otherExits != null) {
+            for(int i = 0; i < otherExits.size(); i++) {
+                directions.add(Symbols.getName(otherExits.getKey(i)));
+            }
+        }
+        return directions;
+    }
+
+    /**
+     * @return A trie of the names of the exits, items and characters in
+     * this room, to complete or correct what the user typed. It is built
+     * again only after the version of the room has changed.
+     */
+    public WordTrie<String> getVocabulary()
+    {
+        if(vocabularyVersion != version) {
+            vocabularyVersion = version;
+            vocabulary = new WordTrie<>();
+            if(exits != null) {
+                for(Direction direction : DIRECTIONS) {
+                    if(exits[direction.ordinal()] != null) {
+                        vocabulary.put(direction.toString(), direction.toString());
+                    }
+                }
+            }
+            if(otherExits != null) {
+                for(int i = 0; i < otherExits.size(); i++) {
+                    String exit = Symbols.getName(otherExits.getKey(i));
+                    vocabulary.put(exit, exit);
+                }
+            }
+            for(String name : items.getNameList()) {
+                vocabulary.put(name, name);
+            }
+            for(String name : characters.getNameList()) {
+                vocabulary.put(name, name);
+            }
+            for(String alias : characters.getAliasList()) {
+                vocabulary.put(alias, alias);
+            }
+        }
+        return vocabulary;
+    }
+
+    /**
+     * @return The ids of the rooms that can be reached through the exits
+     * of this room. The rooms are not made (see setExitId). Rooms without
+     * an id (not made by a World) are left out.
+     */
+    public List<String> getExitIds()
+    {
+        ArrayList<String> ids = new ArrayList<>();
+        if(exits != null) {
+            for(Object exit : exits) {
+                addExitId(ids, exit);
+            }
+        }
+        if(otherExits != null) {
+            for(int i = 0; i < otherExits.size(); i++) {
+                addExitId(ids, otherExits.getValue(i));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Add the id of the room an exit (a Room or the id of a room) leads
+     * to, if it has one.
+     */
+    private static void addExitId(List<String> ids, Object exit)
+    {
+        String id = exit instanceof Room ? ((Room) exit).getId() : (String) exit;
+        if(id != null) {
+            ids.add(id);
+        }
+    }
+
+    /**
+     * @return The World this room belongs to, or null if it has none.
+     */
+    public World getWorld()
+    {
+        return world;
+    }
+
+    /**
+     * @return The items in this room.
+     */
+    public List<Item> getItemList()
+    {
+        return items.getItemList();
+    }
+
+    /**
+     * @return The characters in this room.
+     */
+    public List<Player> getCharacterList()
+    {
+        return characters.getList();
     }
 
     /**
      * Puts a character to this room.
      */
     public void addPlayer(Player player) {
-        characters.put(player.getName(), player);
+        characters.put(player);
+        version++;
+    }
+    
+    /**
+     * Returns the character with the name (or alias) "symbol" if it is in
+     * this room, otherwise it returns null.
+     */
+    public Player getCharacter(int symbol) {
+        return characters.get(symbol);
     }
     
     /**
      * Puts an item into this room.
      */
     public void addItem(Item item) {
-        items.put(item.getName(), item);
+        items.put(item);
+        version++;
     }
     
     /**
-     * Returns the item if it is available, otherwise it returns null.
+     * Returns the item (by name or alias) if it is available, otherwise it returns null.
      */
-    public Item getItem(String name) {
-        return (Item) items.get(name);
+    public Item getItem(int symbol) {
+        return items.get(symbol);
     }    
     
     /**
      * Removes and returns the item if it is available, otherwise it returns null.
      */
-    public Item removeItem(String name) {
-        return (Item) items.remove(name);
+    public Item removeItem(int symbol) {
+        Item item = items.remove(symbol);
+        if(item != null) {
+            version++;
+        }
+        return item;
     }
 }
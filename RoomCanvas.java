@@ -0,0 +1,308 @@
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import javax.swing.ImageIcon;
+import javax.swing.JComponent;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * The picture of the room the player is in: the room, with the player
+ * and the characters in it standing in a row. One component paints it
+ * all, instead of a label for each image.
+ *
+ * The picture is drawn into a back buffer (an image as large as the
+ * component) only where it has changed: when the player moves to
+ * another room, the whole buffer is drawn again; when only the
+ * characters of the room change, only their places are. Painting the
+ * component then only copies the changed part of the buffer to the
+ * screen. The images come from a SpriteCache, and are only looked up
+ * again when a place shows another image, so moving around creates
+ * almost no objects.
+ *
+ * The canvas never reads an image file: an image that is not in the
+ * cache yet is drawn as a plain placeholder, and the GUI has it read in
+ * the background and shows the room again (see GUI.show).
+ *
+ * While the window is being resized, the buffer is stretched to the
+ * height of the component, until the GUI shows the room again at the
+ * new size (see setSizes).
+ *
+ * Only to be used on the event dispatch thread.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class RoomCanvas extends JComponent
+{
+    private static final long serialVersionUID = 1L;
+
+    public static final String PLAYER_FILE = "images/characters/player.png";
+    private static final int SPRITES = 16;     // places for the player and characters, at first
+    private static final Color ROOM_PLACEHOLDER = new Color(200, 200, 200);
+    private static final Color SPRITE_PLACEHOLDER = new Color(150, 150, 150);
+
+    private SpriteCache sprites;
+    private int size, spriteSize;           // of the room, and of a sprite
+    private BufferedImage buffer;           // the back buffer
+    private String backgroundFile;          // the image of the room, and its size
+    private int backgroundSize;
+    private Image background;
+    private int count;                      // sprites shown
+    private String[] files;                 // for each place: the file shown, its size,
+    private int[] fileSizes;
+    private Image[] images;                 // the image,
+    private Rectangle[] bounds;             // and where it is drawn
+    private Rectangle dirty;                // the part of the buffer that must be drawn again
+
+    /**
+     * Create an empty canvas, with images from "sprites".
+     * @param size The width and height of the room.
+     * @param spriteSize The width and height of the player and characters.
+     */
+    public RoomCanvas(SpriteCache sprites, int size, int spriteSize)
+    {
+        this.sprites = sprites;
+        files = new String[SPRITES];
+        fileSizes = new int[SPRITES];
+        images = new Image[SPRITES];
+        bounds = new Rectangle[SPRITES];
+        for(int i = 0; i < SPRITES; i++) {
+            bounds[i] = new Rectangle();
+        }
+        dirty = new Rectangle();
+        setOpaque(true);
+        setSizes(size, spriteSize);
+    }
+
+    /**
+     * Change the size of the room and the sprites. The picture is drawn
+     * again at the new size when it is next shown.
+     */
+    public void setSizes(int size, int spriteSize)
+    {
+        if(size == this.size && spriteSize == this.spriteSize) {
+            return;
+        }
+        this.size = size;
+        this.spriteSize = spriteSize;
+        buffer = null;
+        setPreferredSize(new Dimension(size, size));
+        revalidate();
+    }
+
+    /**
+     * @return The width and height of the room.
+     */
+    public int getRoomSize()
+    {
+        return size;
+    }
+
+    /**
+     * Show a room, with the player (if shown) and the characters in it.
+     * @return true if all images were in the cache; false if some are
+     * shown as placeholders.
+     */
+    public boolean showRoom(RoomView view)
+    {
+        boolean isComplete = loadBackgroundImage(view.getFileName());
+
+        // the player and the characters stand in a row in the middle, with
+        // a gap of 1/n of a sprite between them.
+        int characters = view.getCharacterCount();
+        int n = characters + 1;
+        double location = (size - 1.0 * spriteSize * (n + (n - 1.0) / n)) / 2.0;
+        int y = (int) ((size - spriteSize) / 2.0);
+        int shown = 0;
+        if(view.isPlayerShown()) {
+            isComplete &= setSprite(shown++, PLAYER_FILE, (int) location, y);
+        }
+        for(int i = 0; i < characters; i++) {
+            int place = i + 1;
+            isComplete &= setSprite(shown++, view.getCharacterFileName(i),
+                                    (int) (location + place * spriteSize * (1.0 + 1.0 / n)), y);
+        }
+        setCount(shown);
+        update();
+        return isComplete;
+    }
+
+    /**
+     * Copy the buffer to the screen (only the part Swing asks for), or
+     * stretch it to the height of the component if that is not the size
+     * of the room.
+     */
+    protected void paintComponent(Graphics g)
+    {
+        if(buffer == null) {
+            draw();
+            dirty.setBounds(0, 0, 0, 0);
+        }
+        int side = getHeight();
+        if(side == size || side <= 0) {
+            g.drawImage(buffer, 0, 0, null);
+        } else {
+            Graphics2D stretched = (Graphics2D) g.create();
+            stretched.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                                       RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            stretched.drawImage(buffer, 0, 0, side, side, null);
+            stretched.dispose();
+        }
+    }
+
+    /**
+     * Show the image "fileName" as the room, at the size of the room.
+     * @return false if the image is not in the cache yet.
+     */
+    private boolean loadBackgroundImage(String fileName)
+    {
+        if(fileName.equals(backgroundFile) && backgroundSize == size && background != null && buffer != null) {
+            return true;
+        }
+        ImageIcon icon = sprites.getIfPresent(fileName, size, size);
+        background = icon != null ? icon.getImage() : null;
+        backgroundFile = fileName;
+        backgroundSize = size;
+        dirty.setBounds(0, 0, size, size);
+        return background != null;
+    }
+
+    /**
+     * Show the image "fileName" at place "index", at (x, y).
+     * @return false if the image is not in the cache yet.
+     */
+    private boolean setSprite(int index, String fileName, int x, int y)
+    {
+        if(index == files.length) {
+            grow();
+        }
+        Rectangle place = bounds[index];
+        boolean isShown = index < count;
+        boolean isSame = fileName.equals(files[index]) && fileSizes[index] == spriteSize
+                         && images[index] != null;
+        if(isShown && isSame && place.x == x && place.y == y) {
+            return true;
+        }
+        if(isShown) {
+            addDirty(place);
+        }
+        if(!isSame) {
+            ImageIcon icon = sprites.getIfPresent(fileName, spriteSize, spriteSize);
+            images[index] = icon != null ? icon.getImage() : null;
+            files[index] = fileName;
+            fileSizes[index] = spriteSize;
+        }
+        if(images[index] != null) {
+            place.setBounds(x, y, images[index].getWidth(null), images[index].getHeight(null));
+        } else {
+            place.setBounds(x, y, spriteSize, spriteSize);
+        }
+        addDirty(place);
+        return images[index] != null;
+    }
+
+    /**
+     * Show "shown" sprites from now on. The places of sprites no longer
+     * shown must be drawn again.
+     */
+    private void setCount(int shown)
+    {
+        for(int i = shown; i < count; i++) {
+            addDirty(bounds[i]);
+        }
+        count = shown;
+    }
+
+    /**
+     * Draw the changed part into the buffer, and ask Swing to paint it.
+     */
+    private void update()
+    {
+        if(dirty.isEmpty()) {
+            return;
+        }
+        if(buffer != null) {
+            draw();
+        }
+        if(getHeight() == size) {
+            repaint(dirty.x, dirty.y, dirty.width, dirty.height);
+        } else {
+            repaint();
+        }
+        dirty.setBounds(0, 0, 0, 0);
+    }
+
+    /**
+     * Draw the dirty part of the picture into the buffer (all of it if
+     * there is no buffer yet): the room, then the sprites over it.
+     */
+    private void draw()
+    {
+        if(buffer == null) {
+            GraphicsConfiguration configuration = getGraphicsConfiguration();
+            int side = Math.max(size, 1);
+            buffer = configuration != null ? configuration.createCompatibleImage(side, side)
+                                           : new BufferedImage(side, side, BufferedImage.TYPE_INT_RGB);
+            dirty.setBounds(0, 0, size, size);
+        }
+        Graphics2D g = buffer.createGraphics();
+        g.clipRect(dirty.x, dirty.y, dirty.width, dirty.height);
+        if(background != null) {
+            g.setColor(getBackground() != null ? getBackground() : Color.BLACK);
+            g.fillRect(0, 0, size, size);
+            g.drawImage(background, 0, 0, null);
+        } else {
+            g.setColor(ROOM_PLACEHOLDER);
+            g.fillRect(0, 0, size, size);
+        }
+        for(int i = 0; i < count; i++) {
+            if(bounds[i].intersects(dirty)) {
+                Rectangle place = bounds[i];
+                if(images[i] != null) {
+                    g.drawImage(images[i], place.x, place.y, null);
+                } else {
+                    g.setColor(SPRITE_PLACEHOLDER);
+                    g.fillRoundRect(place.x, place.y, place.width, place.height,
+                                    place.width / 4, place.height / 4);
+                }
+            }
+        }
+        g.dispose();
+    }
+
+    /**
+     * Add a part of the picture that must be drawn again.
+     */
+    private void addDirty(Rectangle part)
+    {
+        if(dirty.isEmpty()) {
+            dirty.setBounds(part);
+        } else {
+            dirty.add(part);
+        }
+    }
+
+    /**
+     * Make room for twice as many sprites.
+     */
+    private void grow()
+    {
+        int length = 2 * files.length;
+        files = Arrays.copyOf(files, length);
+        fileSizes = Arrays.copyOf(fileSizes, length);
+        images = Arrays.copyOf(images, length);
+        Rectangle[] larger = Arrays.copyOf(bounds, length);
+        for(int i = bounds.length; i < length; i++) {
+            larger[i] = new Rectangle();
+        }
+        bounds = larger;
+    }
+}
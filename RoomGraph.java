@@ -0,0 +1,189 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * The exits of all rooms of a WorldFile, as a graph of numbers: every
+ * room has its index in the file (see WorldFile.getRoomIndex) and every
+ * exit an edge number. For
+ * every room, the edges leaving it and the edges arriving at it are kept
+ * in two flat int arrays (one after the other, room by room), so even a
+ * world with many thousands of rooms needs only a few arrays.
+ *
+ * The graph is made once per world file (see WorldFile.getGraph), does
+ * not change, and is shared by all games, as are the ways over it (see
+ * RouteTables). Exits added while playing are kept by each game's
+ * RoutePlanner.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class RoomGraph
+{
+    private WorldFile file;
+    private String[] ids;                   // room index -> room id
+    private int[] firstEdge;                // edges of room u: firstEdge[u] .. firstEdge[u + 1]
+    private int[] edgeSource, edgeTarget, edgeDirection;
+    private int[] firstIncoming;            // incoming edges of room v, in the same way
+    private int[] incomingEdge;
+
+    /**
+     * Read the exits of all rooms of a world file.
+     */
+    public RoomGraph(WorldFile file)
+    {
+        // rooms in file order, so the definitions are read one after another.
+        this.file = file;
+        ids = file.getRoomIds().toArray(new String[0]);
+
+        // read the edges, room by room.
+        int rooms = ids.length;
+        firstEdge = new int[rooms + 1];
+        edgeSource = new int[Math.max(rooms, 1)];
+        edgeTarget = new int[Math.max(rooms, 1)];
+        edgeDirection = new int[Math.max(rooms, 1)];
+        int edges = 0;
+        for(int u = 0; u < rooms; u++) {
+            firstEdge[u] = edges;
+            List<String[]> lines = file.readRoomOnce(ids[u]);
+            for(String[] line : lines) {
+                if(line[0].equals("exit")) {
+                    if(edges == edgeTarget.length) {
+                        edgeSource = Arrays.copyOf(edgeSource, 2 * edges);
+                        edgeTarget = Arrays.copyOf(edgeTarget, 2 * edges);
+                        edgeDirection = Arrays.copyOf(edgeDirection, 2 * edges);
+                    }
+                    edgeSource[edges] = u;
+                    edgeTarget[edges] = getIndexOf(line[2]);
+                    edgeDirection[edges] = Symbols.intern(line[1]);
+                    edges++;
+                }
+            }
+        }
+        firstEdge[rooms] = edges;
+
+        // sort the edges by the room they arrive at.
+        firstIncoming = new int[rooms + 1];
+        for(int e = 0; e < edges; e++) {
+            firstIncoming[edgeTarget[e] + 1]++;
+        }
+        for(int v = 0; v < rooms; v++) {
+            firstIncoming[v + 1] += firstIncoming[v];
+        }
+        incomingEdge = new int[edges];
+        int[] next = Arrays.copyOf(firstIncoming, rooms);
+        for(int e = 0; e < edges; e++) {
+            incomingEdge[next[edgeTarget[e]]++] = e;
+        }
+    }
+
+    /**
+     * @return The index of the room with the id "id", or -1 if there is none.
+     */
+    public int getIndex(String id)
+    {
+        return file.getRoomIndex(id);
+    }
+
+    /**
+     * @return The id of the room with index "index".
+     */
+    public String getId(int index)
+    {
+        return ids[index];
+    }
+
+    /**
+     * @return The number of rooms.
+     */
+    public int getRoomCount()
+    {
+        return ids.length;
+    }
+
+    /**
+     * @return The number of edges (exits).
+     */
+    public int getEdgeCount()
+    {
+        return firstEdge[ids.length];
+    }
+
+    /**
+     * @return The first edge leaving room "u".
+     */
+    public int getFirstEdge(int u)
+    {
+        return firstEdge[u];
+    }
+
+    /**
+     * @return The edge after the last edge leaving room "u".
+     */
+    public int getEndEdge(int u)
+    {
+        return firstEdge[u + 1];
+    }
+
+    /**
+     * @return The room that the edge leads to.
+     */
+    public int getTarget(int edge)
+    {
+        return edgeTarget[edge];
+    }
+
+    /**
+     * @return The symbol of the direction of the edge (see Symbols).
+     */
+    public int getDirection(int edge)
+    {
+        return edgeDirection[edge];
+    }
+
+    /**
+     * @return The room that the edge leaves.
+     */
+    public int getSource(int edge)
+    {
+        return edgeSource[edge];
+    }
+
+    /**
+     * @return The first position in the incoming edges of room "v".
+     */
+    public int getFirstIncoming(int v)
+    {
+        return firstIncoming[v];
+    }
+
+    /**
+     * @return The position after the last incoming edge of room "v".
+     */
+    public int getEndIncoming(int v)
+    {
+        return firstIncoming[v + 1];
+    }
+
+    /**
+     * @return The incoming edge at "position" (see getFirstIncoming).
+     */
+    public int getIncomingEdge(int position)
+    {
+        return incomingEdge[position];
+    }
+
+    /**
+     * @return The index of the room with the id "id".
+     * @throws IllegalArgumentException if there is no such room.
+     */
+    private int getIndexOf(String id)
+    {
+        int index = file.getRoomIndex(id);
+        if(index < 0) {
+            throw new IllegalArgumentException("An exit leads to " + id + ", which is not a room.");
+        }
+        return index;
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.List;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * What the GUI shows of a room at one moment: the image of the room,
+ * whether the player stands in it, and the images of the characters in
+ * it, in the order they stand. The views of the rooms next to it are
+ * kept as well, so their images can be read ahead of time (see
+ * AssetPrefetcher).
+ *
+ * The game runs on its own thread, and changes its rooms there. A view
+ * is made on that thread when the player moves, and is then handed to
+ * the event dispatch thread, which only ever looks at views. A view does
+ * not change once it is made.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class RoomView
+{
+    private static final String[] NONE = new String[0];
+    private static final RoomView[] NO_NEIGHBORS = new RoomView[0];
+
+    private String fileName;
+    private boolean isPlayerShown;
+    private String[] characterFileNames;
+    private RoomView[] neighbors;
+
+    /**
+     * Make a view of "room" as it is now, and of the rooms next to it.
+     * The rooms next to it are not made (see World.getImageFileNames).
+     * Only to be called on the thread of the game.
+     */
+    public RoomView(Room room)
+    {
+        fileName = room.getFileName();
+        // the player is not shown in a room without a description (the win screen).
+        isPlayerShown = !room.getShortDescription().isEmpty();
+        characterFileNames = new String[room.getCharacterCount()];
+        for(int i = 0; i < characterFileNames.length; i++) {
+            characterFileNames[i] = room.getCharacterFileName(i);
+        }
+        neighbors = NO_NEIGHBORS;
+        World world = room.getWorld();
+        if(world != null) {
+            List<String> exitIds = room.getExitIds();
+            neighbors = new RoomView[exitIds.size()];
+            for(int i = 0; i < neighbors.length; i++) {
+                neighbors[i] = new RoomView(world.getImageFileNames(exitIds.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Make a view of an image alone (such as the welcome screen), without
+     * the player, characters or neighbors.
+     */
+    public RoomView(String fileName)
+    {
+        this.fileName = fileName;
+        characterFileNames = NONE;
+        neighbors = NO_NEIGHBORS;
+    }
+
+    /**
+     * Make the view of a neighbor from its image file names: the image of
+     * the room, then those of its characters. The player is not shown, as
+     * the player's image is in the view of the room itself.
+     */
+    private RoomView(List<String> imageFileNames)
+    {
+        fileName = imageFileNames.get(0);
+        characterFileNames = imageFileNames.subList(1, imageFileNames.size()).toArray(NONE);
+        neighbors = NO_NEIGHBORS;
+    }
+
+    /**
+     * @return The image file name of the room.
+     */
+    public String getFileName()
+    {
+        return fileName;
+    }
+
+    /**
+     * @return true if the player is shown in the room.
+     */
+    public boolean isPlayerShown()
+    {
+        return isPlayerShown;
+    }
+
+    /**
+     * @return The number of characters in the room.
+     */
+    public int getCharacterCount()
+    {
+        return characterFileNames.length;
+    }
+
+    /**
+     * @return The image file name of character number "index".
+     */
+    public String getCharacterFileName(int index)
+    {
+        return characterFileNames[index];
+    }
+
+    /**
+     * @return The views of the rooms next to this one (none for the view
+     * of a neighbor).
+     */
+    public RoomView[] getNeighbors()
+    {
+        return neighbors;
+    }
+}
@@ -0,0 +1,318 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * Finds the shortest way (the fewest exits) from one room to another,
+ * for the "goto" command. Exits may be one-way, like the hole in the
+ * garden.
+ *
+ * A table of the shortest ways to every room would be far too big for a
+ * world with many thousands of rooms (one entry for every pair of rooms),
+ * so instead there is one table per destination: for every room, the
+ * exit to take to get closer to the destination, and how many exits are
+ * left. The tables over the exits of the world file are shared by all
+ * games (see RouteTables), so a game only keeps what is its own.
+ *
+ * Exits added while playing (such as the portal) are laid over the
+ * shared tables: only the rooms that now have a shorter way are noted,
+ * for each table this game has used lately. If an exit replaces another
+ * one, a way may have become longer, so from then on this game makes
+ * tables of its own, by a breadth-first search over all its exits.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class RoutePlanner
+{
+    private static final int MAX_TABLES = 8;
+
+    private RoomGraph graph;
+    private RouteTables shared;
+    // exits added while playing; their edge numbers follow those of the graph.
+    private int[] addedSource, addedTarget, addedDirection;
+    private int added;
+    private HashMap<Integer, ArrayList<Integer>> addedIncoming;    // room -> added edges to it
+    private BitSet replaced;    // edges replaced by a later exit
+    private LinkedHashMap<Integer, Table> tables;
+    private int[] queue;
+
+    /**
+     * Create a route planner for the rooms of a graph, whose tables over
+     * the exits of the graph are "shared".
+     */
+    public RoutePlanner(RoomGraph graph, RouteTables shared)
+    {
+        this.graph = graph;
+        this.shared = shared;
+        addedSource = new int[2];
+        addedTarget = new int[2];
+        addedDirection = new int[2];
+        addedIncoming = new HashMap<>();
+        replaced = new BitSet();
+        // least recently used table first.
+        tables = new LinkedHashMap<Integer, Table>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Integer, Table> eldest) {
+                return size() > MAX_TABLES;
+            }
+        };
+    }
+
+    /**
+     * @return The directions of the exits to take, in order, to get from
+     * the room "fromId" to the room "toId". The list is empty if both are
+     * the same room, and null if there is no way (or no such room).
+     */
+    public ArrayList<String> getRoute(String fromId, String toId)
+    {
+        int from = graph.getIndex(fromId);
+        int to = graph.getIndex(toId);
+        if(from < 0 || to < 0) {
+            return null;
+        }
+        Table table = getTable(to);
+        if(table.getDistance(from) < 0) {
+            return null;
+        }
+        ArrayList<String> route = new ArrayList<>(table.getDistance(from));
+        for(int room = from; room != to; room = getTarget(table.getEdge(room))) {
+            route.add(Symbols.getName(getDirection(table.getEdge(room))));
+        }
+        return route;
+    }
+
+    /**
+     * Add an exit from the room "fromId" to the room "toId".
+     */
+    public void addExit(String fromId, String direction, String toId)
+    {
+        int from = graph.getIndex(fromId);
+        int to = graph.getIndex(toId);
+        if(from < 0 || to < 0) {
+            return;
+        }
+        int symbol = Symbols.intern(direction);
+        boolean isReplacing = replace(from, symbol);
+
+        if(added == addedSource.length) {
+            addedSource = Arrays.copyOf(addedSource, 2 * added);
+            addedTarget = Arrays.copyOf(addedTarget, 2 * added);
+            addedDirection = Arrays.copyOf(addedDirection, 2 * added);
+        }
+        addedSource[added] = from;
+        addedTarget[added] = to;
+        addedDirection[added] = symbol;
+        int edge = graph.getEdgeCount() + added;
+        added++;
+        ArrayList<Integer> incoming = addedIncoming.get(to);
+        if(incoming == null) {
+            incoming = new ArrayList<>();
+            addedIncoming.put(to, incoming);
+        }
+        incoming.add(edge);
+
+        if(isReplacing) {
+            // a way may have become longer, which cannot be updated.
+            tables.clear();
+            return;
+        }
+        for(Table table : tables.values()) {
+            addEdge(table, edge);
+        }
+    }
+
+    /**
+     * Give the rooms that now have a shorter way through the added exit
+     * "edge" that way in "table".
+     */
+    private void addEdge(Table table, int edge)
+    {
+        int from = getSource(edge);
+        int to = getTarget(edge);
+        if(table.getDistance(to) >= 0 &&
+           (table.getDistance(from) < 0 || table.getDistance(to) + 1 < table.getDistance(from))) {
+            table.set(from, table.getDistance(to) + 1, edge);
+            search(table, from);
+        }
+    }
+
+    /**
+     * Mark the exit of room "from" in the direction "symbol" as replaced.
+     * @return true if there was such an exit.
+     */
+    private boolean replace(int from, int symbol)
+    {
+        for(int edge = graph.getFirstEdge(from); edge < graph.getEndEdge(from); edge++) {
+            if(graph.getDirection(edge) == symbol && !replaced.get(edge)) {
+                replaced.set(edge);
+                return true;
+            }
+        }
+        for(int i = 0; i < added; i++) {
+            int edge = graph.getEdgeCount() + i;
+            if(addedSource[i] == from && addedDirection[i] == symbol && !replaced.get(edge)) {
+                replaced.set(edge);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The table of the ways to the room "to", made if it is not
+     * kept: the shared table with the added exits laid over it, or, once
+     * an exit has been replaced, a table of this game's own.
+     */
+    private Table getTable(int to)
+    {
+        Table table = tables.get(to);
+        if(table == null) {
+            if(replaced.isEmpty()) {
+                table = new Table(shared.get(to));
+                for(int i = 0; i < added; i++) {
+                    addEdge(table, graph.getEdgeCount() + i);
+                }
+            } else {
+                table = new Table(graph.getRoomCount());
+                table.set(to, 0, 0);
+                search(table, to);
+            }
+            tables.put(to, table);
+        }
+        return table;
+    }
+
+    /**
+     * Breadth-first search backwards from the room "start", whose
+     * distance is already in the table: every room that has an exit to a
+     * room that was reached gets a shorter way through that exit.
+     */
+    private void search(Table table, int start)
+    {
+        if(queue == null) {
+            queue = new int[graph.getRoomCount()];
+        }
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        while(head < tail) {
+            int room = queue[head++];
+            int distance = table.getDistance(room) + 1;
+            for(int i = graph.getFirstIncoming(room); i < graph.getEndIncoming(room); i++) {
+                int edge = graph.getIncomingEdge(i);
+                if(!replaced.get(edge)) {
+                    tail = reach(table, graph.getSource(edge), edge, distance, tail);
+                }
+            }
+            ArrayList<Integer> incoming = addedIncoming.get(room);
+            if(incoming != null) {
+                for(int edge : incoming) {
+                    if(!replaced.get(edge)) {
+                        tail = reach(table, getSource(edge), edge, distance, tail);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Give "room" the way through "edge" if it is shorter than its way so
+     * far, and put it on the queue.
+     * @return The new end of the queue.
+     */
+    private int reach(Table table, int room, int edge, int distance, int tail)
+    {
+        int known = table.getDistance(room);
+        if(known < 0 || distance < known) {
+            table.set(room, distance, edge);
+            queue[tail++] = room;
+        }
+        return tail;
+    }
+
+    /**
+     * @return The room the edge leaves.
+     */
+    private int getSource(int edge)
+    {
+        int count = graph.getEdgeCount();
+        return edge < count ? graph.getSource(edge) : addedSource[edge - count];
+    }
+
+    /**
+     * @return The room the edge leads to.
+     */
+    private int getTarget(int edge)
+    {
+        int count = graph.getEdgeCount();
+        return edge < count ? graph.getTarget(edge) : addedTarget[edge - count];
+    }
+
+    /**
+     * @return The symbol of the direction of the edge.
+     */
+    private int getDirection(int edge)
+    {
+        int count = graph.getEdgeCount();
+        return edge < count ? graph.getDirection(edge) : addedDirection[edge - count];
+    }
+
+    /**
+     * The ways to one destination: for every room, the number of exits to
+     * the destination (or -1 if there is no way) and the first exit to
+     * take. A table over a shared one only keeps the ways that changed.
+     */
+    private static class Table
+    {
+        private int[] distance;
+        private int[] edge;
+        private HashMap<Integer, int[]> changed;   // room -> distance, edge; null if not shared
+
+        /**
+         * Create a table of this game's own, where no room has a way yet.
+         */
+        private Table(int rooms)
+        {
+            distance = new int[rooms];
+            edge = new int[rooms];
+            Arrays.fill(distance, -1);
+        }
+
+        /**
+         * Create a table over a shared one (made by RouteTables.get).
+         */
+        private Table(int[][] shared)
+        {
+            distance = shared[0];
+            edge = shared[1];
+            changed = new HashMap<>();
+        }
+
+        private int getDistance(int room)
+        {
+            int[] way = changed != null ? changed.get(room) : null;
+            return way != null ? way[0] : distance[room];
+        }
+
+        private int getEdge(int room)
+        {
+            int[] way = changed != null ? changed.get(room) : null;
+            return way != null ? way[1] : edge[room];
+        }
+
+        private void set(int room, int newDistance, int newEdge)
+        {
+            if(changed != null) {
+                changed.put(room, new int[] {newDistance, newEdge});
+            } else {
+                distance[room] = newDistance;
+                edge[room] = newEdge;
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * The ways to the destinations of "goto" over the exits of a RoomGraph,
+ * as the world file has them: for one destination, for every room, the
+ * number of exits to the destination (or -1 if there is no way) and the
+ * edge of the first exit to take. A table is made by a breadth-first
+ * search from the destination, following the exits backwards.
+ *
+ * The tables are made once per world file (see WorldFile.getRouteTables)
+ * and shared by all games, so a table for a destination is only made
+ * again once it has not been used for a while: the tables of the last
+ * few destinations are kept. A table does not change once it is made.
+ * Exits added while playing are laid over the tables by the RoutePlanner
+ * of each game.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class RouteTables
+{
+    private static final int MAX_TABLES = 16;
+
+    private RoomGraph graph;
+    private LinkedHashMap<Integer, int[][]> tables;
+
+    /**
+     * Create the (empty) tables of the ways over the exits of "graph".
+     */
+    public RouteTables(RoomGraph graph)
+    {
+        this.graph = graph;
+        // least recently used table first.
+        tables = new LinkedHashMap<Integer, int[][]>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Integer, int[][]> eldest) {
+                return size() > MAX_TABLES;
+            }
+        };
+    }
+
+    /**
+     * @return The table of the ways to the room "to": the distances, then
+     * the edges, each by room. The table is made if it is not kept. It is
+     * shared, and must not be changed.
+     */
+    public int[][] get(int to)
+    {
+        synchronized(this) {
+            int[][] table = tables.get(to);
+            if(table != null) {
+                return table;
+            }
+        }
+        // made outside the lock, so other games need not wait for it.
+        int[][] table = search(to);
+        synchronized(this) {
+            tables.put(to, table);
+        }
+        return table;
+    }
+
+    /**
+     * Breadth-first search backwards from the room "to".
+     * @return The distances and edges of the ways to "to".
+     */
+    private int[][] search(int to)
+    {
+        int rooms = graph.getRoomCount();
+        int[] distance = new int[rooms];
+        int[] edge = new int[rooms];
+        Arrays.fill(distance, -1);
+        int[] queue = new int[rooms];
+        int head = 0;
+        int tail = 0;
+        distance[to] = 0;
+        queue[tail++] = to;
+        while(head < tail) {
+            int room = queue[head++];
+            for(int i = graph.getFirstIncoming(room); i < graph.getEndIncoming(room); i++) {
+                int incoming = graph.getIncomingEdge(i);
+                int source = graph.getSource(incoming);
+                if(distance[source] < 0) {
+                    distance[source] = distance[room] + 1;
+                    edge[source] = incoming;
+                    queue[tail++] = source;
+                }
+            }
+        }
+        return new int[][] {distance, edge};
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * What happens when the player uses an item on another item, or gives
+ * an item to a character, read from the "rule" definitions of a world
+ * file:
+ *     rule use fuel machine
+ *         move fuel nowhere
+ *         exit physlab portal portalroom
+ *         say "You have created a portal!"
+ * A rule is found by its verb (USE or GIVE), its item and its target
+ * (an item for USE, a character for GIVE), all as numbers in the world
+ * file, in a hash table: finding a rule takes the same time however many
+ * rules there are. The effects of all rules are kept one after another
+ * (see Effects).
+ *
+ * The rules are made once per world file (see WorldFile.getRules), do
+ * not change, and are shared by all games.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class RuleTable
+{
+    // verbs
+    public static final int USE = 0, GIVE = 1;
+    private static final List<String> VERBS = Arrays.asList("use", "give");
+
+    private HashMap<Long, Integer> rules;   // key (see getKey) -> rule number
+    private int[] firstEffect;              // effects of rule r: firstEffect[r] .. endEffect[r]
+    private int[] endEffect;
+    private Effects effects;
+
+    /**
+     * Compile the rules from the lines of their definitions.
+     * @throws IllegalArgumentException if a rule is not right.
+     */
+    public RuleTable(WorldFile file, List<List<String[]>> definitions)
+    {
+        rules = new HashMap<>();
+        firstEffect = new int[definitions.size()];
+        endEffect = new int[definitions.size()];
+        effects = new Effects(file);
+        for(int r = 0; r < definitions.size(); r++) {
+            List<String[]> lines = definitions.get(r);
+            String[] definition = lines.get(0);
+            String owner = "The rule " + String.join(" ", Arrays.copyOfRange(definition, 1, definition.length));
+            if(definition.length < 4) {
+                throw new IllegalArgumentException(owner + " needs a verb, an item and a target.");
+            }
+            int verb = VERBS.indexOf(definition[1]);
+            if(verb < 0) {
+                throw new IllegalArgumentException(owner + " has the verb " + definition[1]
+                    + "; it can be use or give.");
+            }
+            int item = file.getItemIndex(definition[2]);
+            int target = verb == USE ? file.getItemIndex(definition[3]) : file.getCharacterIndex(definition[3]);
+            if(item < 0 || target < 0) {
+                throw new IllegalArgumentException(owner + " names "
+                    + (item < 0 ? definition[2] : definition[3]) + ", which is not in the world.");
+            }
+            if(rules.put(getKey(verb, item, target), r) != null) {
+                throw new IllegalArgumentException(owner + " is in the world file twice.");
+            }
+
+            firstEffect[r] = effects.size();
+            for(int l = 1; l < lines.size(); l++) {
+                effects.add(lines.get(l), owner);
+            }
+            endEffect[r] = effects.size();
+        }
+    }
+
+    /**
+     * @return The number of the rule for "verb" (USE or GIVE), the item
+     * with the number "item" and the target with the number "target" (an
+     * item for USE, a character for GIVE), or -1 if there is none.
+     */
+    public int find(int verb, int item, int target)
+    {
+        if(item < 0 || target < 0) {
+            return -1;
+        }
+        Integer rule = rules.get(getKey(verb, item, target));
+        return rule != null ? rule : -1;
+    }
+
+    /**
+     * @return The number of rules.
+     */
+    public int size()
+    {
+        return firstEffect.length;
+    }
+
+    /**
+     * @return The first effect of rule number "rule".
+     */
+    public int getFirstEffect(int rule)
+    {
+        return firstEffect[rule];
+    }
+
+    /**
+     * @return The effect after the last effect of rule number "rule".
+     */
+    public int getEndEffect(int rule)
+    {
+        return endEffect[rule];
+    }
+
+    /**
+     * @return The effects of all rules.
+     */
+    public Effects getEffects()
+    {
+        return effects;
+    }
+
+    /**
+     * @return The key of a rule in the hash table.
+     */
+    private static long getKey(int verb, int item, int target)
+    {
+        return ((long) verb << 62) | ((long) item << 31) | target;
+    }
+}
@@ -0,0 +1,350 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * The solver finds the shortest sequence of commands that wins the game,
+ * and the states from which the game can no longer be won. It plays the
+ * game itself: from every state it tries every possible command (see
+ * Game.getPossibleCommands) in a game without a GUI, put back into that
+ * state each time (Game.setState). Each thread has its own game.
+ *
+ * The search is breadth-first, one level (number of commands) at a time,
+ * so the first win found is a shortest one. The states of a level are
+ * tried in parallel (by a ForkJoinPool); every state found is put into
+ * a ConcurrentHashMap under its key (see GameState), so each state is
+ * only tried once, whichever way it was reached first.
+ *
+ * Run from the project folder:
+ *     java Solver [-w worldfile] [-n name] [-max states] [-deadends]
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class Solver
+{
+    private static final int SPLIT = 4;     // states tried by one task
+
+    private String worldFile, playerName;
+    private int maxStates;
+    private boolean isRecordingMoves;
+    private ConcurrentHashMap<String, State> states;
+    private ConcurrentLinkedQueue<State> wins;
+    private boolean isComplete;
+    private ThreadLocal<Game> games;
+
+    /**
+     * Create a solver for the world in "worldFile".
+     * @param playerName The name the player gives at the start.
+     * @param maxStates The search stops when this many states are found.
+     */
+    public Solver(String worldFile, String playerName, int maxStates)
+    {
+        this.worldFile = worldFile;
+        this.playerName = playerName;
+        this.maxStates = maxStates;
+        games = new ThreadLocal<Game>() {
+            protected Game initialValue() {
+                return newGame();
+            }
+        };
+    }
+
+    /**
+     * Find a shortest sequence of commands that wins the game.
+     * @return The commands, or null if the game cannot be won (or no way
+     * was found before "maxStates" states).
+     */
+    public List<String> solve()
+    {
+        isRecordingMoves = false;
+        search(true);
+        State best = null;
+        for(State win : wins) {
+            // several wins of the same length may be found; take the same one every time.
+            if(best == null || getCommands(win).toString().compareTo(getCommands(best).toString()) < 0) {
+                best = win;
+            }
+        }
+        return best != null ? getCommands(best) : null;
+    }
+
+    /**
+     * Find every state, and the states from which the game cannot be won
+     * any more: those that have no way to a state that wins.
+     * @return A shortest sequence of commands to each such state, the
+     * shortest first. If the search stopped at "maxStates", only states
+     * whose every way on was tried are included, so states may be missing.
+     */
+    public List<List<String>> findDeadEnds()
+    {
+        isRecordingMoves = true;
+        search(false);
+
+        // mark every state that has a way to a win, going backwards from the
+        // wins. States that were not tried (when the search stopped early)
+        // might lead to a win too.
+        ArrayList<State> queue = new ArrayList<>();
+        for(State state : states.values()) {
+            if(state.isWin || !state.isTried) {
+                state.canWin = true;
+                queue.add(state);
+            }
+        }
+        for(int i = 0; i < queue.size(); i++) {
+            if(queue.get(i).previous == null) {
+                continue;
+            }
+            for(State previous : queue.get(i).previous) {
+                if(!previous.canWin) {
+                    previous.canWin = true;
+                    queue.add(previous);
+                }
+            }
+        }
+
+        ArrayList<State> deadEnds = new ArrayList<>();
+        for(State state : states.values()) {
+            if(!state.canWin) {
+                deadEnds.add(state);
+            }
+        }
+        Collections.sort(deadEnds, new Comparator<State>() {
+            public int compare(State a, State b) {
+                return Integer.compare(a.depth, b.depth);
+            }
+        });
+        ArrayList<List<String>> result = new ArrayList<>();
+        for(State state : deadEnds) {
+            result.add(getCommands(state));
+        }
+        return result;
+    }
+
+    /**
+     * @return The number of different states found by the last search.
+     */
+    public int getStateCount()
+    {
+        return states.size();
+    }
+
+    /**
+     * @return true if the last search tried every state it found (it did
+     * not stop at "maxStates").
+     */
+    public boolean isComplete()
+    {
+        return isComplete;
+    }
+
+    /**
+     * Search breadth-first from the start of the game.
+     * @param stopAtWin Stop after the first level with a win.
+     */
+    private void search(boolean stopAtWin)
+    {
+        states = new ConcurrentHashMap<>();
+        wins = new ConcurrentLinkedQueue<>();
+        String startKey = newGame().getState().getKey();
+        State start = new State(startKey, null, null, false);
+        states.put(startKey, start);
+
+        ArrayList<State> level = new ArrayList<>();
+        level.add(start);
+        isComplete = true;
+        while(!level.isEmpty()) {
+            if(states.size() > maxStates) {
+                isComplete = false;
+                break;
+            }
+            ConcurrentLinkedQueue<State> next = new ConcurrentLinkedQueue<>();
+            ForkJoinPool.commonPool().invoke(new TryStates(level, 0, level.size(), next));
+            if(stopAtWin && !wins.isEmpty()) {
+                break;
+            }
+            level = new ArrayList<>(next);
+        }
+    }
+
+    /**
+     * Try every possible command in a state. New states are put into
+     * "next", or into "wins" if the command won the game.
+     */
+    private void tryState(State state, ConcurrentLinkedQueue<State> next)
+    {
+        Game game = games.get();
+        GameState before = GameState.fromKey(state.key);
+        game.setState(before);
+        for(String command : game.getPossibleCommands()) {
+            game.setState(before);
+            game.updateGameState(command);
+            String key = game.getState().getKey();
+            State found = new State(key, state, command, game.isFinished());
+            State known = states.putIfAbsent(key, found);
+            if(known == null) {
+                known = found;
+                if(found.isWin) {
+                    wins.add(found);
+                } else {
+                    next.add(found);
+                }
+            }
+            if(isRecordingMoves && known != state) {
+                synchronized(known) {
+                    if(known.previous == null) {
+                        known.previous = new ArrayList<>();
+                    }
+                    known.previous.add(state);
+                }
+            }
+        }
+        state.isTried = true;
+    }
+
+    /**
+     * @return A new game (without a GUI, or undo), with the player named.
+     */
+    private Game newGame()
+    {
+        Game game = new Game(worldFile);
+        game.setUndoLevels(0);
+        game.start();
+        game.updateGameState(playerName);
+        return game;
+    }
+
+    /**
+     * @return The commands that led from the start to "state".
+     */
+    private List<String> getCommands(State state)
+    {
+        ArrayList<String> commands = new ArrayList<>(state.depth);
+        for(State s = state; s.command != null; s = s.from) {
+            commands.add(s.command);
+        }
+        Collections.reverse(commands);
+        return commands;
+    }
+
+    /**
+     * A state of the game, and how it was first reached.
+     */
+    private static class State
+    {
+        private String key;         // the key of the state (see GameState)
+        private State from;         // the state before, or null at the start
+        private String command;     // the command that led here from "from"
+        private int depth;          // the number of commands from the start
+        private boolean isWin, isTried, canWin;
+        private ArrayList<State> previous;  // states with a command to here (when recording moves)
+
+        private State(String key, State from, String command, boolean isWin)
+        {
+            this.key = key;
+            this.from = from;
+            this.command = command;
+            this.depth = from != null ? from.depth + 1 : 0;
+            this.isWin = isWin;
+        }
+    }
+
+    /**
+     * Tries the states "from" (inclusive) to "to" (exclusive) of a level,
+     * splitting them between tasks that run in parallel.
+     */
+    private class TryStates extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private List<State> level;
+        private int from, to;
+        private ConcurrentLinkedQueue<State> next;
+
+        private TryStates(List<State> level, int from, int to, ConcurrentLinkedQueue<State> next)
+        {
+            this.level = level;
+            this.from = from;
+            this.to = to;
+            this.next = next;
+        }
+
+        protected void compute()
+        {
+            if(to - from <= SPLIT) {
+                for(int i = from; i < to; i++) {
+                    tryState(level.get(i), next);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TryStates(level, from, middle, next),
+                          new TryStates(level, middle, to, next));
+            }
+        }
+    }
+
+    /**
+     * Solve the game, and print the shortest way to win it. With
+     * "-deadends", also print how many states cannot be won any more.
+     */
+    public static void main(String[] args)
+    {
+        String worldFile = "worlds/tomorrow.world";
+        String name = "Bob";
+        int maxStates = 1000000;
+        boolean deadEnds = false;
+        for(int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-w":
+                    worldFile = args[++i];
+                    break;
+                case "-n":
+                    name = args[++i];
+                    break;
+                case "-max":
+                    maxStates = Integer.parseInt(args[++i]);
+                    break;
+                case "-deadends":
+                    deadEnds = true;
+                    break;
+                default:
+                    System.out.println("Usage: java Solver [-w worldfile] [-n name] [-max states] [-deadends]");
+                    return;
+            }
+        }
+
+        Solver solver = new Solver(worldFile, name, maxStates);
+        long start = System.nanoTime();
+        List<String> commands = solver.solve();
+        long time = (System.nanoTime() - start) / 1000000;
+        if(commands == null) {
+            System.out.println((solver.isComplete() ? "The game cannot be won" : "No way to win found")
+                + " (" + solver.getStateCount() + " states, " + time + " ms).");
+        } else {
+            System.out.println("Shortest way to win: " + commands.size() + " commands ("
+                + solver.getStateCount() + " states, " + time + " ms).");
+            for(String command : commands) {
+                System.out.println("  " + command);
+            }
+        }
+
+        if(deadEnds) {
+            start = System.nanoTime();
+            List<List<String>> found = solver.findDeadEnds();
+            time = (System.nanoTime() - start) / 1000000;
+            System.out.println(found.size() + " states from which the game cannot be won ("
+                + solver.getStateCount() + " states" + (solver.isComplete() ? "" : ", search stopped early")
+                + ", " + time + " ms).");
+            for(int i = 0; i < found.size() && i < 5; i++) {
+                System.out.println("  " + (found.get(i).isEmpty() ? "(the start)" : String.join(", ", found.get(i))));
+            }
+        }
+    }
+}
@@ -0,0 +1,311 @@
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * This class keeps images that have already been read and scaled, so
+ * that going back to a room does not read or scale its images again.
+ * Images are stored by file name and size. The cache is bounded by the
+ * bytes its images take, not by their number, so it holds as many small
+ * character images as large room images allow. When it is full, the
+ * images that were used least recently are removed.
+ *
+ * Each image file is read only once (while it stays in the cache): it
+ * is kept as a SpritePyramid, and an image at a new size is scaled from
+ * the nearest level of the pyramid. So after a change of size, such as
+ * going fullscreen or resizing the window, no file is read again.
+ *
+ * The cache may be used by the GUI and by an AssetPrefetcher at the
+ * same time. An image that one of them is reading is not read again by
+ * the other: it waits for the first read to finish.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class SpriteCache
+{
+    private LinkedHashMap<String, ImageIcon> sprites;
+    private LinkedHashMap<String, SpritePyramid> pyramids;
+    private HashMap<String, FutureTask<ImageIcon>> loading;   // images being read, by key
+    private HashMap<String, FutureTask<SpritePyramid>> pyramidsLoading;   // by file name
+    private AssetBundle bundle;
+    private long maxImageBytes, maxPyramidBytes, imageBytes, pyramidBytes;
+    private int hits, misses;
+
+    /**
+     * Create a cache which holds scaled images of at most "maxImageBytes"
+     * bytes, and pyramids of at most "maxPyramidBytes" bytes. The image
+     * used last is always kept, however large it is.
+     */
+    public SpriteCache(long maxImageBytes, long maxPyramidBytes)
+    {
+        this.maxImageBytes = maxImageBytes;
+        this.maxPyramidBytes = maxPyramidBytes;
+        // access order, so the first entry is the least recently used one.
+        sprites = new LinkedHashMap<>(16, 0.75f, true);
+        pyramids = new LinkedHashMap<>(16, 0.75f, true);
+        loading = new HashMap<>();
+        pyramidsLoading = new HashMap<>();
+    }
+
+    /**
+     * Use the packed images of "bundle" where possible, instead of
+     * reading and scaling PNG files.
+     */
+    public void setBundle(AssetBundle bundle)
+    {
+        this.bundle = bundle;
+    }
+
+    /**
+     * Return the image in the file "fileName", scaled to the given size.
+     * The file is only read if the image is not in the cache. If another
+     * thread is reading it already, this waits for that thread instead of
+     * reading it again.
+     * @param fileName The file name of the image.
+     * @param width The width the image is scaled to.
+     * @param height The height the image is scaled to.
+     * @return The scaled image.
+     */
+    public ImageIcon get(String fileName, int width, int height) throws IOException
+    {
+        return obtain(fileName, width, height, true);
+    }
+
+    /**
+     * Return the image in the file "fileName" at the given size, only if
+     * it is already in the cache. Never reads a file, so it is safe to
+     * call on the event dispatch thread.
+     * @return The scaled image, or null if it has not been read yet.
+     */
+    public synchronized ImageIcon getIfPresent(String fileName, int width, int height)
+    {
+        ImageIcon icon = sprites.get(fileName + "@" + width + "x" + height);
+        if(icon != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return icon;
+    }
+
+    /**
+     * Read and scale an image ahead of time, unless it is already in the
+     * cache (or being read). Does not count as a hit or a miss.
+     */
+    public void prefetch(String fileName, int width, int height) throws IOException
+    {
+        obtain(fileName, width, height, false);
+    }
+
+    /**
+     * Return an image from the cache, or read it. Each image is read by
+     * one thread at a time: the first thread to miss puts a task for it
+     * into "loading" and runs it, outside the lock; other threads asking
+     * for the same image meanwhile wait for that task.
+     * @param isCounted true if the request counts as a hit or a miss.
+     */
+    private ImageIcon obtain(final String fileName, final int width, final int height, boolean isCounted)
+        throws IOException
+    {
+        String key = fileName + "@" + width + "x" + height;
+        FutureTask<ImageIcon> task;
+        boolean isReader = false;
+        synchronized(this) {
+            ImageIcon icon = sprites.get(key);
+            if(icon != null) {
+                if(isCounted) {
+                    hits++;
+                }
+                return icon;
+            }
+            if(isCounted) {
+                misses++;
+            }
+            task = loading.get(key);
+            if(task == null) {
+                task = new FutureTask<>(new Callable<ImageIcon>() {
+                        public ImageIcon call() throws IOException {
+                            return load(fileName, width, height);
+                        }
+                    });
+                loading.put(key, task);
+                isReader = true;
+            }
+        }
+        if(!isReader) {
+            return waitFor(task, fileName);
+        }
+        // read and scale outside the lock, so the GUI never waits for a prefetch.
+        task.run();
+        try {
+            ImageIcon icon = waitFor(task, fileName);
+            synchronized(this) {
+                putImage(key, icon);
+            }
+            return icon;
+        } finally {
+            synchronized(this) {
+                loading.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Return the image in the file "fileName", scaled to the given size.
+     * If the bundle holds the image at that size, it is taken from there;
+     * otherwise it is scaled from the pyramid of the file.
+     */
+    private ImageIcon load(String fileName, int width, int height) throws IOException
+    {
+        if(bundle != null) {
+            Image packed = bundle.getImage(fileName, width, height);
+            if(packed != null) {
+                return new ImageIcon(packed);
+            }
+        }
+        return new ImageIcon(getPyramid(fileName).get(width, height));
+    }
+
+    /**
+     * Return the pyramid of the image in the file "fileName". The file is
+     * only read if the pyramid is not in the cache, and only by one thread
+     * at a time (as in obtain).
+     */
+    private SpritePyramid getPyramid(final String fileName) throws IOException
+    {
+        FutureTask<SpritePyramid> task;
+        boolean isReader = false;
+        synchronized(this) {
+            SpritePyramid pyramid = pyramids.get(fileName);
+            if(pyramid != null) {
+                return pyramid;
+            }
+            task = pyramidsLoading.get(fileName);
+            if(task == null) {
+                task = new FutureTask<>(new Callable<SpritePyramid>() {
+                        public SpritePyramid call() throws IOException {
+                            BufferedImage picture = ImageIO.read(new File(fileName));
+                            if(picture == null) {
+                                throw new IOException(fileName + " is not an image.");
+                            }
+                            return new SpritePyramid(picture);
+                        }
+                    });
+                pyramidsLoading.put(fileName, task);
+                isReader = true;
+            }
+        }
+        if(!isReader) {
+            return waitFor(task, fileName);
+        }
+        task.run();
+        try {
+            SpritePyramid pyramid = waitFor(task, fileName);
+            synchronized(this) {
+                if(pyramids.put(fileName, pyramid) == null) {
+                    pyramidBytes += pyramid.getBytes();
+                }
+                Iterator<SpritePyramid> eldest = pyramids.values().iterator();
+                while(pyramidBytes > maxPyramidBytes && pyramids.size() > 1) {
+                    pyramidBytes -= eldest.next().getBytes();
+                    eldest.remove();
+                }
+            }
+            return pyramid;
+        } finally {
+            synchronized(this) {
+                pyramidsLoading.remove(fileName);
+            }
+        }
+    }
+
+    /**
+     * Wait for a task reading the file "fileName", and return its result.
+     * @throws IOException if the file could not be read, or the thread
+     * was interrupted while waiting.
+     */
+    private static <T> T waitFor(FutureTask<T> task, String fileName) throws IOException
+    {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Cannot read " + fileName, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Stopped waiting for " + fileName);
+        }
+    }
+
+    /**
+     * Put a scaled image into the cache, and remove the images used least
+     * recently while the cache holds too many bytes.
+     * Only to be called while holding the lock.
+     */
+    private void putImage(String key, ImageIcon icon)
+    {
+        if(sprites.put(key, icon) == null) {
+            imageBytes += getBytes(icon);
+        }
+        Iterator<ImageIcon> eldest = sprites.values().iterator();
+        while(imageBytes > maxImageBytes && sprites.size() > 1) {
+            imageBytes -= getBytes(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    /**
+     * @return The bytes taken by the pixels of "icon".
+     */
+    private static long getBytes(ImageIcon icon)
+    {
+        return 4L * icon.getIconWidth() * icon.getIconHeight();
+    }
+
+    /**
+     * @return The number of images that were found in the cache.
+     */
+    public synchronized int getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * @return The number of images that had to be read and scaled.
+     */
+    public synchronized int getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * @return The number of images in the cache.
+     */
+    public synchronized int getSize()
+    {
+        return sprites.size();
+    }
+
+    /**
+     * @return The bytes taken by the scaled images in the cache.
+     */
+    public synchronized long getBytes()
+    {
+        return imageBytes;
+    }
+}
@@ -0,0 +1,173 @@
+import java.util.Arrays;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * A map from symbols (see Symbols) to values. The entries are kept in
+ * two arrays in the order they were put, and a small open addressing
+ * table of ints finds the entry of a symbol. Finding a value does not
+ * create any object or hash any String.
+ *
+ * Removing an entry moves the entries after it, so the order is kept;
+ * this is cheap for the small maps used for the items and characters in
+ * a room.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class SymbolMap<V>
+{
+    private int[] keys;
+    private Object[] values;
+    private int[] table;    // open addressing: entry index + 1, or 0 if free
+    private int size;
+
+    /**
+     * Create an empty map.
+     */
+    public SymbolMap()
+    {
+        keys = new int[2];
+        values = new Object[2];
+        table = new int[4];
+    }
+
+    /**
+     * @return The value of the symbol, or null if there is none.
+     */
+    public V get(int key)
+    {
+        int index = indexOf(key);
+        return index >= 0 ? getValue(index) : null;
+    }
+
+    /**
+     * @return true if the symbol has a value.
+     */
+    public boolean containsKey(int key)
+    {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Give the symbol a value. A symbol that already has a value keeps
+     * its place in the order.
+     * @return The previous value, or null.
+     */
+    public V put(int key, V value)
+    {
+        int index = indexOf(key);
+        if(index >= 0) {
+            V previous = getValue(index);
+            values[index] = value;
+            return previous;
+        }
+        if(size == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * size);
+            values = Arrays.copyOf(values, 2 * size);
+        }
+        keys[size] = key;
+        values[size] = value;
+        size++;
+        if(2 * size > table.length) {
+            table = new int[2 * table.length];
+            rehash();
+        } else {
+            insert(size - 1);
+        }
+        return null;
+    }
+
+    /**
+     * Remove the value of the symbol.
+     * @return The value, or null if there was none.
+     */
+    public V remove(int key)
+    {
+        int index = indexOf(key);
+        if(index < 0) {
+            return null;
+        }
+        V value = getValue(index);
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        values[size] = null;
+        rehash();
+        return value;
+    }
+
+    /**
+     * @return The number of entries.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return The symbol of entry number "index" (in the order they were put).
+     */
+    public int getKey(int index)
+    {
+        return keys[index];
+    }
+
+    /**
+     * @return The value of entry number "index" (in the order they were put).
+     */
+    @SuppressWarnings("unchecked")
+    public V getValue(int index)
+    {
+        return (V) values[index];
+    }
+
+    /**
+     * @return The index of the entry of the symbol, or -1.
+     */
+    private int indexOf(int key)
+    {
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        while(table[slot] != 0) {
+            int index = table[slot] - 1;
+            if(keys[index] == key) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Put the entry with the given index into the table.
+     */
+    private void insert(int index)
+    {
+        int mask = table.length - 1;
+        int slot = hash(keys[index]) & mask;
+        while(table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = index + 1;
+    }
+
+    /**
+     * Put all entries into the table again.
+     */
+    private void rehash()
+    {
+        Arrays.fill(table, 0);
+        for(int index = 0; index < size; index++) {
+            insert(index);
+        }
+    }
+
+    /**
+     * Spread the bits of a symbol, as symbols are small numbers.
+     */
+    private static int hash(int key)
+    {
+        return key * 0x9E3779B9 >>> 16 ^ key;
+    }
+}
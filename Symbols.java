@@ -0,0 +1,89 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * The symbol table gives every name used in the game (directions, items,
+ * characters) a number, its symbol. The name is stored once, in lower
+ * case, and the numbers are small and dense (0, 1, 2, ...), so rooms,
+ * items and characters can be stored and compared by number instead of
+ * by String.
+ *
+ * There is one table for all games. Names are only added (interned), so
+ * a symbol means the same name for as long as the program runs. The
+ * table may be used by several games at the same time.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class Symbols
+{
+    private static ConcurrentHashMap<String, Integer> symbols = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[64];
+    private static int size;
+
+    /**
+     * The table is only used through its static methods.
+     */
+    private Symbols()
+    {
+    }
+
+    /**
+     * Add a name to the table, unless it is already there.
+     * @return The symbol of the name (in lower case).
+     */
+    public static int intern(String name)
+    {
+        Integer symbol = symbols.get(name);
+        if(symbol != null) {
+            return symbol;
+        }
+        name = name.toLowerCase();
+        synchronized(Symbols.class) {
+            symbol = symbols.get(name);
+            if(symbol == null) {
+                String[] table = names;
+                if(size == table.length) {
+                    table = Arrays.copyOf(table, 2 * size);
+                }
+                table[size] = name;
+                names = table;
+                symbol = size++;
+                symbols.put(name, symbol);
+            }
+        }
+        return symbol;
+    }
+
+    /**
+     * @return The symbol of the name, or -1 if the name is not in the
+     * table. Unlike intern, this never adds a name, so words the user
+     * types by mistake do not fill the table.
+     */
+    public static int lookup(String name)
+    {
+        if(name == null) {
+            return -1;
+        }
+        Integer symbol = symbols.get(name);
+        return symbol != null ? symbol : -1;
+    }
+
+    /**
+     * @return The name (in lower case) of the symbol.
+     */
+    public static String getName(int symbol)
+    {
+        return names[symbol];
+    }
+
+    /**
+     * @return The number of names in the table.
+     */
+    public static int size()
+    {
+        return symbols.size();
+    }
+}
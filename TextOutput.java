@@ -1,29 +1,75 @@
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
 
 /**
- * This class is part of the "World of Tomorrow" game. 
+ * This class is part of the "World of Tomorrow" game.
  * The class redirects output to a JTextArea.
- * 
+ *
+ * Written bytes are collected until the stream is flushed. The collected
+ * bytes are then decoded (as UTF-8) and appended to the JTextArea in one
+ * go, on the event dispatch thread. The game flushes once per command,
+ * so the text of a command causes only a single change to the document.
+ *
  * @author Sarunas Djacenko
  * @version 2017.12.08
  */
 public class TextOutput extends OutputStream {
     private JTextArea textArea;
+    private byte[] pending;
+    private int count;
 
     /**
      * Creates a new instance of TextOutput Stream.
      */
     public TextOutput(JTextArea jtfOutput) {
         textArea = jtfOutput;
+        pending = new byte[1024];
     }
 
     /**
-     * Redirects data to the textArea.
+     * Collects a single byte.
      */
     public void write(int b) throws IOException {
-        // append the data as characters to the JTextArea control
-        textArea.append(String.valueOf((char)b));
-    }  
-}
\ No newline at end of file
+        ensureCapacity(count + 1);
+        pending[count++] = (byte) b;
+    }
+
+    /**
+     * Collects len bytes from the array b, starting at off.
+     */
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureCapacity(count + len);
+        System.arraycopy(b, off, pending, count, len);
+        count += len;
+    }
+
+    /**
+     * Appends the collected data to the textArea, and scrolls to the bottom.
+     */
+    public void flush() throws IOException {
+        if(count == 0) {
+            return;
+        }
+        final String text = new String(pending, 0, count, StandardCharsets.UTF_8);
+        count = 0;
+        SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    textArea.append(text);
+                    textArea.setCaretPosition(textArea.getDocument().getLength());
+                }
+            });
+    }
+
+    /**
+     * Grows the array of collected bytes, if necessary.
+     */
+    private void ensureCapacity(int capacity) {
+        if(capacity > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(capacity, 2 * pending.length));
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * The states of a game kept so that commands can be undone (see
+ * Game.undo): a stack of at most a fixed number of states, each packed
+ * by GameState.toBytes. When the stack is full, pushing a state forgets
+ * the oldest one.
+ *
+ * Only the newest state is kept whole. Each older state is kept as its
+ * change from the state after it: the numbers of the state that differ
+ * from those of the state after it. A command changes only a few of the
+ * numbers (the room, an item, a flag), so a state usually takes a few
+ * bytes instead of the size of the whole state. The numbers at the end
+ * that are the same in both states (such as the way back, after an item
+ * was taken) are counted instead of being compared one by one, so
+ * adding or removing a number in the middle is still a small change.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class UndoStates
+{
+    // the newest state is whole, the others are changes (see getChange).
+    private RingBuffer<byte[]> states;
+    private long bytes;
+
+    /**
+     * Create an empty stack for at most "capacity" states.
+     */
+    public UndoStates(int capacity)
+    {
+        states = new RingBuffer<>(capacity);
+    }
+
+    /**
+     * Put a state (packed by GameState.toBytes) on top of the stack. If
+     * the stack is full, the oldest state is forgotten.
+     */
+    public void push(byte[] state)
+    {
+        if(states.getCapacity() == 0) {
+            return;
+        }
+        if(!states.isEmpty()) {
+            byte[] newest = states.pop();
+            byte[] change = getChange(state, newest);
+            bytes += change.length - newest.length;
+            states.push(change);
+        }
+        if(states.size() == states.getCapacity()) {
+            bytes -= states.get(0).length;
+        }
+        states.push(state);
+        bytes += state.length;
+    }
+
+    /**
+     * Take the newest state off the stack.
+     * @return The state, or null if the stack is empty.
+     */
+    public byte[] pop()
+    {
+        byte[] newest = states.pop();
+        if(newest == null) {
+            return null;
+        }
+        bytes -= newest.length;
+        if(!states.isEmpty()) {
+            byte[] change = states.pop();
+            byte[] state = applyChange(newest, change);
+            bytes += state.length - change.length;
+            states.push(state);
+        }
+        return newest;
+    }
+
+    /**
+     * @return The newest state, or null if the stack is empty.
+     */
+    public byte[] peek()
+    {
+        return states.peek();
+    }
+
+    /**
+     * @return State "index", counting from the oldest (0). The states
+     * after it are worked out first, so this takes longer for old states.
+     */
+    public byte[] get(int index)
+    {
+        if(index < 0 || index >= states.size()) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + states.size());
+        }
+        byte[] state = states.peek();
+        for(int i = states.size() - 2; i >= index; i--) {
+            state = applyChange(state, states.get(i));
+        }
+        return state;
+    }
+
+    /**
+     * @return The number of states on the stack.
+     */
+    public int size()
+    {
+        return states.size();
+    }
+
+    /**
+     * @return The largest number of states the stack holds.
+     */
+    public int getCapacity()
+    {
+        return states.getCapacity();
+    }
+
+    /**
+     * @return true if the stack is empty.
+     */
+    public boolean isEmpty()
+    {
+        return states.isEmpty();
+    }
+
+    /**
+     * Forget all states.
+     */
+    public void clear()
+    {
+        states.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return The bytes taken by the states on the stack.
+     */
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * @return How to make the state "to" from the state "from", packed
+     * by GameState.toBytes: the number of numbers in "to", how many of
+     * its last numbers are the last numbers of "from", and for each other
+     * number of "to" that is not the number at the same place in "from",
+     * its place (after the place before it) and the number.
+     */
+    private static byte[] getChange(byte[] from, byte[] to)
+    {
+        GameState before = GameState.fromBytes(from);
+        GameState after = GameState.fromBytes(to);
+        int length = after.size();
+        int same = 0;
+        while(same < length && same < before.size()
+              && before.get(before.size() - 1 - same) == after.get(length - 1 - same)) {
+            same++;
+        }
+        GameState change = new GameState();
+        change.add(length);
+        change.add(same);
+        int last = 0;
+        for(int i = 0; i < length - same; i++) {
+            if(i >= before.size() || before.get(i) != after.get(i)) {
+                change.add(i - last);
+                change.add(after.get(i));
+                last = i;
+            }
+        }
+        return change.toBytes();
+    }
+
+    /**
+     * @return The state made from the state "from" by "change" (made by
+     * getChange).
+     */
+    private static byte[] applyChange(byte[] from, byte[] change)
+    {
+        GameState before = GameState.fromBytes(from);
+        GameState changes = GameState.fromBytes(change);
+        int length = changes.get(0);
+        int same = changes.get(1);
+        int[] values = new int[length];
+        for(int i = 0; i < length - same && i < before.size(); i++) {
+            values[i] = before.get(i);
+        }
+        for(int i = 0; i < same; i++) {
+            values[length - same + i] = before.get(before.size() - same + i);
+        }
+        int place = 0;
+        for(int i = 2; i < changes.size(); i += 2) {
+            place += changes.get(i);
+            values[place] = changes.get(i + 1);
+        }
+        GameState after = new GameState();
+        for(int value : values) {
+            after.add(value);
+        }
+        return after.toBytes();
+    }
+}
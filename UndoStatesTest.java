@@ -0,0 +1,98 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * Tests of UndoStates. There is no test framework in the project: run
+ * the main method, which prints "UndoStatesTest: OK", or fails with the
+ * first check that does not hold.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class UndoStatesTest
+{
+    public static void main(String args[]) {
+        statesComeBackAsTheyWerePushed();
+        smallChangesTakeFewBytes();
+        System.out.println("UndoStatesTest: OK");
+    }
+
+    /**
+     * Whatever is pushed and popped, the states on the stack are the same
+     * as on a RingBuffer that keeps them whole.
+     */
+    private static void statesComeBackAsTheyWerePushed()
+    {
+        Random random = new Random(1);
+        UndoStates states = new UndoStates(5);
+        RingBuffer<byte[]> whole = new RingBuffer<>(5);
+        for(int step = 0; step < 2000; step++) {
+            if(random.nextInt(4) == 0) {
+                check(Arrays.equals(states.pop(), whole.pop()), "pop gives the newest state");
+            } else {
+                byte[] state = newState(random, 1 + random.nextInt(30));
+                states.push(state);
+                whole.push(state);
+            }
+            check(states.size() == whole.size(), "the sizes are the same");
+            for(int i = 0; i < whole.size(); i++) {
+                check(Arrays.equals(states.get(i), whole.get(i)), "state " + i + " is the same");
+            }
+        }
+    }
+
+    /**
+     * A state that differs from the next one in a single number, or by a
+     * number added in the middle, takes a few bytes.
+     */
+    private static void smallChangesTakeFewBytes()
+    {
+        GameState state = new GameState();
+        for(int i = 0; i < 200; i++) {
+            state.add(1000 + i);
+        }
+        UndoStates states = new UndoStates(3);
+        byte[] first = state.toBytes();
+        states.push(first);
+        long whole = states.getBytes();
+
+        state.set(0, 7);
+        states.push(state.toBytes());
+        check(states.getBytes() < whole + 10, "a changed number takes a few bytes");
+
+        GameState longer = new GameState();
+        for(int i = 0; i < state.size(); i++) {
+            longer.add(state.get(i));
+            if(i == 100) {
+                longer.add(5);
+            }
+        }
+        states.push(longer.toBytes());
+        check(states.getBytes() < longer.toBytes().length + 20, "an added number takes a few bytes");
+        check(Arrays.equals(states.get(0), first), "the oldest state can be worked out");
+    }
+
+    /**
+     * @return A state of "size" small numbers, some of them large.
+     */
+    private static byte[] newState(Random random, int size)
+    {
+        GameState state = new GameState();
+        for(int i = 0; i < size; i++) {
+            state.add(random.nextInt(5) == 0 ? random.nextInt(100000) - 1 : random.nextInt(3));
+        }
+        return state.toBytes();
+    }
+
+    /**
+     * Fail with "message" unless "condition" holds.
+     */
+    private static void check(boolean condition, String message)
+    {
+        if(!condition) {
+            throw new AssertionError("UndoStatesTest: " + message);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+import java.util.Arrays;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * A vocabulary holds all words the parser knows, in lower case, and
+ * gives each of them a number (its id). A word can be looked up directly
+ * in the text the user typed, ignoring case, without creating a new
+ * String: the stored word is returned instead.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class Vocabulary
+{
+    private String[] words;
+    private int[] table;    // open addressing: word id + 1, or 0 if free
+    private int size;
+
+    /**
+     * Create an empty vocabulary.
+     */
+    public Vocabulary()
+    {
+        words = new String[16];
+        table = new int[64];
+    }
+
+    /**
+     * Add a word, unless it is already known.
+     * @return The id of the word.
+     */
+    public int add(String word)
+    {
+        word = word.toLowerCase();
+        int id = lookup(word, 0, word.length());
+        if(id >= 0) {
+            return id;
+        }
+        if(size == words.length) {
+            words = Arrays.copyOf(words, 2 * size);
+        }
+        words[size] = word;
+        if(2 * (size + 1) > table.length) {
+            rehash(2 * table.length);
+        }
+        insert(size);
+        return size++;
+    }
+
+    /**
+     * Look up the characters of "text" from "start" (inclusive) to "end"
+     * (exclusive), ignoring case.
+     * @return The id of the word, or -1 if it is not known.
+     */
+    public int lookup(CharSequence text, int start, int end)
+    {
+        int mask = table.length - 1;
+        int slot = hash(text, start, end) & mask;
+        while(table[slot] != 0) {
+            int id = table[slot] - 1;
+            if(matches(words[id], text, start, end)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return The word with the given id.
+     */
+    public String getWord(int id)
+    {
+        return words[id];
+    }
+
+    /**
+     * @return The number of words.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return true if the lower case "word" equals the given characters,
+     * ignoring their case.
+     */
+    private static boolean matches(String word, CharSequence text, int start, int end)
+    {
+        if(word.length() != end - start) {
+            return false;
+        }
+        for(int i = start; i < end; i++) {
+            if(word.charAt(i - start) != Character.toLowerCase(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hash the given characters as if they were in lower case.
+     */
+    private static int hash(CharSequence text, int start, int end)
+    {
+        int hash = 0;
+        for(int i = start; i < end; i++) {
+            hash = 31 * hash + Character.toLowerCase(text.charAt(i));
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Put the word with the given id into the table.
+     */
+    private void insert(int id)
+    {
+        int mask = table.length - 1;
+        int slot = hash(words[id], 0, words[id].length()) & mask;
+        while(table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = id + 1;
+    }
+
+    /**
+     * Grow the table, and put all words into it again.
+     */
+    private void rehash(int capacity)
+    {
+        table = new int[capacity];
+        for(int id = 0; id < size; id++) {
+            insert(id);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+import java.util.Arrays;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * A trie (prefix tree) of words, each with a value. Besides finding a
+ * word exactly, it can complete a prefix if only one word starts with it
+ * ("tak" is "take"), and find the closest word to a misspelt one ("tlak"
+ * is "talk"). Closeness is the number of letters that have to be added,
+ * removed, changed or swapped (the Damerau-Levenshtein distance); the
+ * distance is worked out for all words at once by walking the trie, one
+ * row of the distance table per letter.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class WordTrie<V>
+{
+    private Node<V> root;
+    private int maxLength;
+
+    // the closest word found by the last search, and the rows of its
+    // distance table (kept for the next search).
+    private int[][] rows;
+    private V closest;
+    private int closestDistance;
+    private boolean isAmbiguous;
+
+    /**
+     * Create an empty trie.
+     */
+    public WordTrie()
+    {
+        root = new Node<>();
+    }
+
+    /**
+     * Store a word (in lower case) with its value.
+     */
+    public void put(String word, V value)
+    {
+        Node<V> existing = find(word);
+        boolean isNew = existing == null || !existing.isWord;
+        Node<V> node = root;
+        for(int i = 0; i < word.length(); i++) {
+            if(isNew) {
+                node.count++;
+            }
+            node = node.getOrAddChild(word.charAt(i));
+        }
+        if(isNew) {
+            node.count++;
+        }
+        node.isWord = true;
+        node.value = value;
+        maxLength = Math.max(maxLength, word.length());
+    }
+
+    /**
+     * @return The value of the word, or null if the word is not stored.
+     */
+    public V get(String word)
+    {
+        Node<V> node = find(word);
+        if(node != null && node.isWord) {
+            return node.value;
+        }
+        return null;
+    }
+
+    /**
+     * Find the word meant by "word": the word itself, the only word that
+     * starts with it, or else the only closest word (at most one mistake
+     * in short words, two in longer words).
+     * @return The value of the word, or null if no single word matches.
+     */
+    public V resolve(String word)
+    {
+        Node<V> node = find(word);
+        if(node != null) {
+            if(node.isWord) {
+                return node.value;
+            }
+            if(node.count == 1) {
+                return complete(node);
+            }
+            // more than one word starts with it.
+            return null;
+        }
+        if(word.length() < 3) {
+            return null;
+        }
+        return findClosest(word, word.length() <= 4 ? 1 : 2);
+    }
+
+    /**
+     * @return The value of the only closest word to "word", if it is at
+     * most "maxDistance" mistakes away. Null if there is no such word, or
+     * if several words are equally close.
+     */
+    public V findClosest(String word, int maxDistance)
+    {
+        closest = null;
+        closestDistance = maxDistance + 1;
+        isAmbiguous = false;
+
+        if(rows == null || rows.length < maxLength + 2 || rows[0].length < word.length() + 1) {
+            rows = new int[maxLength + 2][word.length() + 1];
+        }
+        for(int i = 0; i <= word.length(); i++) {
+            rows[0][i] = i;
+        }
+        for(int i = 0; i < root.size; i++) {
+            search(root.children[i], root.keys[i], (char) 0, 1, rows, word, maxDistance);
+        }
+        return isAmbiguous ? null : closest;
+    }
+
+    /**
+     * Work out the row of the distance table for "node", reached by the
+     * letter "c" (after "previous"), and continue with its children while
+     * some words below it may still be close enough.
+     */
+    private void search(Node<V> node, char c, char previous, int depth, int[][] rows,
+                        String word, int maxDistance)
+    {
+        int[] row = rows[depth];
+        int[] above = rows[depth - 1];
+        row[0] = depth;
+        int rowMinimum = row[0];
+        for(int i = 1; i <= word.length(); i++) {
+            int cost = word.charAt(i - 1) == c ? 0 : 1;
+            int distance = Math.min(Math.min(row[i - 1] + 1, above[i] + 1), above[i - 1] + cost);
+            if(i > 1 && depth > 1 && word.charAt(i - 1) == previous && word.charAt(i - 2) == c) {
+                // two letters swapped
+                distance = Math.min(distance, rows[depth - 2][i - 2] + 1);
+            }
+            row[i] = distance;
+            rowMinimum = Math.min(rowMinimum, distance);
+        }
+
+        int distance = row[word.length()];
+        if(node.isWord && distance <= maxDistance) {
+            if(distance < closestDistance) {
+                closest = node.value;
+                closestDistance = distance;
+                isAmbiguous = false;
+            } else if(distance == closestDistance && node.value != closest) {
+                isAmbiguous = true;
+            }
+        }
+        if(rowMinimum <= maxDistance) {
+            for(int i = 0; i < node.size; i++) {
+                search(node.children[i], node.keys[i], c, depth + 1, rows, word, maxDistance);
+            }
+        }
+    }
+
+    /**
+     * @return The node reached by the letters of "word", or null.
+     */
+    private Node<V> find(String word)
+    {
+        Node<V> node = root;
+        for(int i = 0; i < word.length() && node != null; i++) {
+            node = node.getChild(word.charAt(i));
+        }
+        return node;
+    }
+
+    /**
+     * @return The value of the only word below "node".
+     */
+    private V complete(Node<V> node)
+    {
+        while(!node.isWord) {
+            node = node.children[0];
+        }
+        return node.value;
+    }
+
+    /**
+     * A letter in the trie. Children are kept in small arrays.
+     */
+    private static class Node<V>
+    {
+        private char[] keys = new char[0];
+        private Node<V>[] children = newArray(0);
+        private int size;
+        private int count;      // number of words at or below this node
+        private boolean isWord;
+        private V value;
+
+        private Node<V> getChild(char c)
+        {
+            for(int i = 0; i < size; i++) {
+                if(keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private Node<V> getOrAddChild(char c)
+        {
+            Node<V> child = getChild(c);
+            if(child == null) {
+                if(size == keys.length) {
+                    keys = Arrays.copyOf(keys, size + 2);
+                    children = Arrays.copyOf(children, size + 2);
+                }
+                child = new Node<>();
+                keys[size] = c;
+                children[size] = child;
+                size++;
+            }
+            return child;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static <V> Node<V>[] newArray(int length)
+        {
+            return (Node<V>[]) new Node[length];
+        }
+    }
+}
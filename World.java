@@ -0,0 +1,562 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * The rooms, items and characters of one game, made from a WorldFile.
+ * A room is only made when it is needed for the first time: when the
+ * player starts in it, or when an exit leading to it is used. Its items
+ * and characters are made together with it. The exits of a new room are
+ * only remembered by the ids of the rooms they lead to (see
+ * Room.setExitId), so making a room never makes its neighbours.
+ *
+ * Every room, item and character is made at most once, so the same id
+ * always gives the same object.
+ *
+ * The RoutePlanner of the world is also made when first needed. Exits
+ * added while playing (Room.setExit) are passed on to it.
+ *
+ * The world remembers where each item was put by the world file, and
+ * what each character wanted and owned at the start, so that addState
+ * only needs to write down what has changed. Items and characters that
+ * have not been made yet are still as they were at the start.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class World
+{
+    // where an item is (see addState).
+    private static final int NOWHERE = 0, IN_ROOM = 1, IN_BAG = 2, WITH_CHARACTER = 3;
+    private static final int[] NO_PLACE = {NOWHERE, 0};
+
+    private WorldFile file;
+    private HashMap<String, Room> rooms;
+    private HashMap<String, Item> items;
+    private HashMap<Item, String> itemIds;      // item -> id
+    private HashMap<String, Player> characters;
+    private HashMap<Player, Integer> characterIndexes;  // character -> number in the world file
+    private ArrayList<String[]> addedExits;    // from, direction, to
+    private HashMap<String, int[]> itemHomes;   // item id -> place at the start
+    private HashMap<String, Item[]> characterHomes;    // id -> wanted, owned at the start
+    private RoutePlanner planner;
+    private WordTrie<String> roomNames;     // short description -> room id
+
+    /**
+     * Create a world from a world file. No rooms are made yet.
+     */
+    public World(WorldFile file)
+    {
+        this.file = file;
+        rooms = new HashMap<>();
+        items = new HashMap<>();
+        itemIds = new HashMap<>();
+        characters = new HashMap<>();
+        characterIndexes = new HashMap<>();
+        addedExits = new ArrayList<>();
+        itemHomes = new HashMap<>();
+        characterHomes = new HashMap<>();
+    }
+
+    /**
+     * @return The world file this world is made from.
+     */
+    public WorldFile getFile()
+    {
+        return file;
+    }
+
+    /**
+     * @return The room the player starts in.
+     */
+    public Room getStartRoom()
+    {
+        return getRoom(file.getHeader("start"));
+    }
+
+    /**
+     * @return The room that wins the game when the player enters it.
+     */
+    public Room getWinRoom()
+    {
+        return getRoom(file.getHeader("win"));
+    }
+
+    /**
+     * @return The number of rooms made so far.
+     */
+    public int getRoomCount()
+    {
+        return rooms.size();
+    }
+
+    /**
+     * @return The route planner of this world, which knows all exits,
+     * including those added while playing.
+     */
+    public RoutePlanner getRoutePlanner()
+    {
+        if(planner == null) {
+            planner = new RoutePlanner(file.getGraph(), file.getRouteTables());
+            for(String[] exit : addedExits) {
+                planner.addExit(exit[0], exit[1], exit[2]);
+            }
+        }
+        return planner;
+    }
+
+    /**
+     * Find the room the user means by "name": the room whose short
+     * description is "name" (in any case, and without punctuation, so
+     * "physics lab" is the Physics Lab and "hallway lower ground" the
+     * Hallway (Lower Ground)), the only room whose description starts
+     * with it, or the only closest one (see WordTrie.resolve). No rooms
+     * are made.
+     * @return The id of the room, or null if no single room matches.
+     */
+    public String findRoomId(String name)
+    {
+        if(roomNames == null) {
+            roomNames = new WordTrie<>();
+            String[] names = file.getRoomNames();
+            for(int i = 0; i < names.length; i++) {
+                roomNames.put(toRoomName(names[i]), file.getRoomId(i));
+            }
+        }
+        return roomNames.resolve(toRoomName(name));
+    }
+
+    /**
+     * @return "text" in lower case, with every run of characters other
+     * than letters and digits made a single space.
+     */
+    private static String toRoomName(String text)
+    {
+        return text.toLowerCase().replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    /**
+     * Called by a room of this world when an exit is added to it while
+     * playing.
+     */
+    public void exitAdded(Room room, String direction, Room neighbor)
+    {
+        addedExits.add(new String[] {room.getId(), direction, neighbor.getId()});
+        if(planner != null) {
+            planner.addExit(room.getId(), direction, neighbor.getId());
+        }
+    }
+
+    /**
+     * @return The room with the id "id", made from the world file if
+     * this is the first time it is needed.
+     */
+    public Room getRoom(String id)
+    {
+        Room room = rooms.get(id);
+        if(room != null) {
+            return room;
+        }
+        List<String[]> lines = file.readRoom(id);
+        String[] definition = lines.get(0);
+        room = new Room(definition[2], definition[3]);
+        room.setWorld(this, id);
+        rooms.put(id, room);
+        for(int i = 1; i < lines.size(); i++) {
+            String[] line = lines.get(i);
+            switch (line[0]) {
+                case "exit":
+                    room.setExitId(line[1], line[2]);
+                    break;
+                case "item":
+                    room.addItem(getItem(line[1]));
+                    itemHomes.put(line[1], new int[] {IN_ROOM, file.getRoomIndex(id)});
+                    break;
+                case "npc":
+                    room.addPlayer(getCharacter(line[1]));
+                    break;
+            }
+        }
+        return room;
+    }
+
+    /**
+     * @return The image file names of the room with the id "id": the image
+     * of the room, then the images of the characters in it. If the room
+     * has not been made yet, they are taken from the world file, and the
+     * room (and its characters) are not made, so the GUI can read the
+     * images of the rooms next to the player ahead of time.
+     */
+    public List<String> getImageFileNames(String id)
+    {
+        ArrayList<String> fileNames = new ArrayList<>();
+        Room room = rooms.get(id);
+        if(room != null) {
+            fileNames.add(room.getFileName());
+            for(int i = 0; i < room.getCharacterCount(); i++) {
+                fileNames.add(room.getCharacterFileName(i));
+            }
+            return fileNames;
+        }
+        List<String[]> lines = file.readRoom(id);
+        fileNames.add(lines.get(0)[3]);
+        for(int i = 1; i < lines.size(); i++) {
+            String[] line = lines.get(i);
+            if(line[0].equals("npc")) {
+                Player character = characters.get(line[1]);
+                fileNames.add(character != null ? character.getFileName()
+                                                : file.readCharacter(line[1]).get(0)[3]);
+            }
+        }
+        return fileNames;
+    }
+
+    /**
+     * @return The item with the id "id", made from the world file if
+     * this is the first time it is needed.
+     */
+    public Item getItem(String id)
+    {
+        Item item = items.get(id);
+        if(item != null) {
+            return item;
+        }
+        List<String[]> lines = file.readItem(id);
+        String[] definition = lines.get(0);
+        item = new Item(definition[2], definition[4], Double.parseDouble(definition[3]));
+        for(int i = 1; i < lines.size(); i++) {
+            String[] line = lines.get(i);
+            if(line[0].equals("alias")) {
+                item.addAlias(line[1]);
+            }
+        }
+        items.put(id, item);
+        itemIds.put(item, id);
+        return item;
+    }
+
+    /**
+     * @return The character with the id "id", made from the world file if
+     * this is the first time it is needed.
+     */
+    public Player getCharacter(String id)
+    {
+        Player character = characters.get(id);
+        if(character != null) {
+            return character;
+        }
+        List<String[]> lines = file.readCharacter(id);
+        String[] definition = lines.get(0);
+        Item wanted = null;
+        Item owned = null;
+        String dialogue = id;
+        ArrayList<String> aliases = new ArrayList<>();
+        for(int i = 1; i < lines.size(); i++) {
+            String[] line = lines.get(i);
+            switch (line[0]) {
+                case "wants":
+                    wanted = getItem(line[1]);
+                    break;
+                case "owns":
+                    owned = getItem(line[1]);
+                    break;
+                case "dialogue":
+                    dialogue = line[1];
+                    break;
+                case "alias":
+                    aliases.add(line[1]);
+                    break;
+            }
+        }
+        character = new Player(definition[2], definition[3], wanted, null, owned);
+        character.setDialogue(file.getDialogue(dialogue));
+        characterHomes.put(id, new Item[] {wanted, owned});
+        for(int i = 1; i < lines.size(); i++) {
+            if(lines.get(i)[0].equals("owns")) {
+                itemHomes.put(lines.get(i)[1], new int[] {WITH_CHARACTER, file.getCharacterIndex(id)});
+            }
+        }
+        for(String alias : aliases) {
+            character.addAlias(alias);
+        }
+        characters.put(id, character);
+        characterIndexes.put(character, file.getCharacterIndex(id));
+        return character;
+    }
+
+    /**
+     * Add what has changed in this world since the start to a GameState:
+     * every item that is not where the world file put it (or that can now
+     * be used), every character that does not want and own what it did
+     * (or whose dialogue has moved on), and the exits added while playing. Rooms, items and characters are
+     * written as their numbers in the world file, in that order, so the
+     * same world always gives the same state.
+     *
+     * The state has three lists, each starting with its length:
+     *     item, where it was at the start (kind, room or character),
+     *         where it is now (kind, room or character), use flags
+     *     character, item wanted, item owned (1), item owned (2),
+     *         state of its dialogue
+     *     room, direction (its number in the header), room it leads to
+     * Items are written with where they were at the start, so setState
+     * can take them from there without reading the rest of the world.
+     * @param player The player, whose bag holds items too.
+     */
+    public void addState(GameState state, Player player)
+    {
+        // find where every item that has been made is now.
+        HashMap<Item, int[]> places = new HashMap<>();
+        for(Map.Entry<String, Room> room : rooms.entrySet()) {
+            for(Item item : room.getValue().getItemList()) {
+                places.put(item, new int[] {IN_ROOM, file.getRoomIndex(room.getKey())});
+            }
+        }
+        for(Map.Entry<String, Player> character : characters.entrySet()) {
+            for(Item item : character.getValue().getItemList()) {
+                places.put(item, new int[] {WITH_CHARACTER, file.getCharacterIndex(character.getKey())});
+            }
+        }
+        for(Item item : player.getItemList()) {
+            places.put(item, new int[] {IN_BAG, 0});
+        }
+
+        int[] made = getIndexes(items.keySet(), true);
+        int countAt = state.size();
+        state.add(0);
+        int count = 0;
+        for(int index : made) {
+            String id = file.getItemId(index);
+            Item item = items.get(id);
+            int[] place = places.getOrDefault(item, NO_PLACE);
+            int[] home = itemHomes.getOrDefault(id, NO_PLACE);
+            if(!Arrays.equals(place, home) || item.canBeUsed() || item.canBeUsedOn()) {
+                state.add(index);
+                state.add(home[0]);
+                state.add(home[1]);
+                state.add(place[0]);
+                state.add(place[1]);
+                state.addFlags(item.canBeUsed(), item.canBeUsedOn());
+                count++;
+            }
+        }
+        state.set(countAt, count);
+
+        made = getIndexes(characters.keySet(), false);
+        countAt = state.size();
+        state.add(0);
+        count = 0;
+        for(int index : made) {
+            String id = file.getCharacterId(index);
+            Player character = characters.get(id);
+            Item[] home = characterHomes.get(id);
+            if(character.getItemWanted() != home[0] || character.getItemOwned1() != null
+               || character.getItemOwned2() != home[1] || character.getDialogueState() != 0) {
+                state.add(index);
+                state.add(getIndex(character.getItemWanted()));
+                state.add(getIndex(character.getItemOwned1()));
+                state.add(getIndex(character.getItemOwned2()));
+                state.add(character.getDialogueState());
+                count++;
+            }
+        }
+        state.set(countAt, count);
+
+        state.add(addedExits.size());
+        List<String> directions = Arrays.asList(file.getHeaderWords("directions"));
+        for(String[] exit : addedExits) {
+            int direction = directions.indexOf(exit[1]);
+            if(direction < 0) {
+                throw new IllegalStateException("The direction " + exit[1] + " is not in the header of the world file.");
+            }
+            state.add(file.getRoomIndex(exit[0]));
+            state.add(direction);
+            state.add(file.getRoomIndex(exit[2]));
+        }
+    }
+
+    /**
+     * Put this world into a state written by addState. The world must be
+     * new (nothing has changed in it yet). Only the rooms and characters
+     * named in the state are made.
+     * @param position Where the lists of addState start in the state.
+     * @param player The player, whose bag the items in the bag are put in.
+     * @return The position after the lists.
+     */
+    public int setState(GameState state, int position, Player player)
+    {
+        int count = state.get(position++);
+        for(int i = 0; i < count; i++) {
+            Item item = getItem(file.getItemId(state.get(position)));
+            remove(item, state.get(position + 1), state.get(position + 2));
+            put(item, state.get(position + 3), state.get(position + 4), player);
+            item.setCanBeUsed(state.getFlag(position + 5, 0));
+            item.setCanBeUsedOn(state.getFlag(position + 5, 1));
+            position += 6;
+        }
+
+        count = state.get(position++);
+        for(int i = 0; i < count; i++) {
+            Player character = getCharacter(file.getCharacterId(state.get(position)));
+            character.setItems(getItem(state.get(position + 1)), getItem(state.get(position + 2)),
+                               getItem(state.get(position + 3)));
+            character.setDialogueState(state.get(position + 4));
+            position += 5;
+        }
+
+        count = state.get(position++);
+        String[] directions = file.getHeaderWords("directions");
+        for(int i = 0; i < count; i++) {
+            Room room = getRoom(file.getRoomId(state.get(position)));
+            room.setExit(directions[state.get(position + 1)], getRoom(file.getRoomId(state.get(position + 2))));
+            position += 3;
+        }
+        return position;
+    }
+
+    /**
+     * Add the order of the items to a GameState: of the items in the bag,
+     * and in every room that holds an item the world file did not put
+     * there. The order is not part of addState, as it does not change
+     * what can be done; it only keeps the lists of items as they were.
+     * @param player The player, whose bag holds items too.
+     */
+    public void addOrder(GameState state, Player player)
+    {
+        addOrder(state, player.getItemList());
+        int countAt = state.size();
+        state.add(0);
+        int count = 0;
+        int[] made = new int[rooms.size()];
+        int i = 0;
+        for(String id : rooms.keySet()) {
+            made[i++] = file.getRoomIndex(id);
+        }
+        Arrays.sort(made);
+        for(int index : made) {
+            String id = file.getRoomId(index);
+            List<Item> list = rooms.get(id).getItemList();
+            for(Item item : list) {
+                if(!Arrays.equals(itemHomes.getOrDefault(itemIds.get(item), NO_PLACE), new int[] {IN_ROOM, index})) {
+                    state.add(index);
+                    addOrder(state, list);
+                    count++;
+                    break;
+                }
+            }
+        }
+        state.set(countAt, count);
+    }
+
+    /**
+     * Put the items back in the order written by addOrder.
+     * @param position Where the order starts in the state.
+     * @return The position after the order.
+     */
+    public int setOrder(GameState state, int position, Player player)
+    {
+        int count = state.get(position++);
+        for(int i = 0; i < count; i++) {
+            Item item = getItem(state.get(position + i));
+            player.removeItem(item.getSymbol());
+            player.addItem(item);
+        }
+        position += count;
+
+        int rooms = state.get(position++);
+        for(int r = 0; r < rooms; r++) {
+            Room room = getRoom(file.getRoomId(state.get(position++)));
+            count = state.get(position++);
+            for(int i = 0; i < count; i++) {
+                Item item = getItem(state.get(position + i));
+                room.removeItem(item.getSymbol());
+                room.addItem(item);
+            }
+            position += count;
+        }
+        return position;
+    }
+
+    /**
+     * Add a list of items (its length, then the items) to a GameState.
+     */
+    private void addOrder(GameState state, List<Item> items)
+    {
+        state.add(items.size());
+        for(Item item : items) {
+            state.add(file.getItemIndex(itemIds.get(item)));
+        }
+    }
+
+    /**
+     * Take an item from a place (see addState).
+     */
+    private void remove(Item item, int kind, int place)
+    {
+        if(kind == IN_ROOM) {
+            getRoom(file.getRoomId(place)).removeItem(item.getSymbol());
+        } else if(kind == WITH_CHARACTER) {
+            getCharacter(file.getCharacterId(place)).removeItem(item.getSymbol());
+        }
+    }
+
+    /**
+     * Put an item in a place (see addState).
+     */
+    private void put(Item item, int kind, int place, Player player)
+    {
+        if(kind == IN_ROOM) {
+            getRoom(file.getRoomId(place)).addItem(item);
+        } else if(kind == WITH_CHARACTER) {
+            getCharacter(file.getCharacterId(place)).addItem(item);
+        } else if(kind == IN_BAG) {
+            player.addItem(item);
+        }
+    }
+
+    /**
+     * @return The numbers in the world file of the items (or characters)
+     * with these ids, in order.
+     */
+    private int[] getIndexes(Collection<String> ids, boolean isItems)
+    {
+        int[] indexes = new int[ids.size()];
+        int i = 0;
+        for(String id : ids) {
+            indexes[i++] = isItems ? file.getItemIndex(id) : file.getCharacterIndex(id);
+        }
+        Arrays.sort(indexes);
+        return indexes;
+    }
+
+    /**
+     * @return The number of the item in the world file, or -1 for no item.
+     */
+    public int getIndex(Item item)
+    {
+        return item != null ? file.getItemIndex(itemIds.get(item)) : -1;
+    }
+
+    /**
+     * @return The number of a character of this world in the world file,
+     * or -1 if it is not one.
+     */
+    public int getIndex(Player character)
+    {
+        Integer index = characterIndexes.get(character);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * @return The item with the number "index" in the world file, or null
+     * for -1.
+     */
+    private Item getItem(int index)
+    {
+        return index >= 0 ? getItem(file.getItemId(index)) : null;
+    }
+}
@@ -0,0 +1,588 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.CRC32;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * A world file describes the rooms, items and characters of a world
+ * (see worlds/tomorrow.world for the format). When the file is read,
+ * only its header is parsed, and the position of every definition is
+ * noted in an index. A definition is read when it is needed for the
+ * first time (see World), so even a very large world loads quickly.
+ * The words of a definition are kept once read, as games that play the
+ * same world (or a game put back into a saved state) read them again.
+ * Dialogues and rules are kept compiled (see Dialogue and RuleTable).
+ *
+ * Rooms, items and characters are numbered in the order they are in the
+ * file (see getRoomIndex), so a number means the same thing in every
+ * game that plays the file, for example when a saved game is loaded.
+ *
+ * A WorldFile does not change once loaded, and is shared by every game
+ * that plays the same world.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class WorldFile
+{
+    private static ConcurrentHashMap<String, WorldFile> loaded = new ConcurrentHashMap<>();
+
+    private byte[] bytes;
+    private int checksum;
+    private Index rooms, items, characters, dialogues, rules;
+    private AtomicReferenceArray<Dialogue> compiled;    // dialogue number -> dialogue, once compiled
+    private RuleTable ruleTable;    // made when first needed
+    private HashMap<String, String> header;
+    private RoomGraph graph;    // made when first needed
+    private RouteTables routeTables;    // made when first needed
+    private String[] roomNames;     // room number -> short description, made when first needed
+
+    /**
+     * Load a world file, or return it if it has been loaded before.
+     */
+    public static WorldFile load(String fileName) throws IOException
+    {
+        WorldFile file = loaded.get(fileName);
+        if(file == null) {
+            file = new WorldFile(fileName);
+            WorldFile previous = loaded.putIfAbsent(fileName, file);
+            if(previous != null) {
+                file = previous;
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Read the file, read the header and build the index.
+     * @throws IllegalArgumentException if a flag is not in the header
+     * "flags" (see checkFlags).
+     */
+    private WorldFile(String fileName) throws IOException
+    {
+        bytes = Files.readAllBytes(Paths.get(fileName));
+        rooms = new Index();
+        items = new Index();
+        characters = new Index();
+        dialogues = new Index();
+        rules = new Index();
+        header = new HashMap<>();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        checksum = (int) crc.getValue();
+
+        ArrayList<Integer> flagsSet = new ArrayList<>();   // positions of the flags of "set" lines
+        int length = bytes.length;
+        int position = 0;
+        while(position < length) {
+            int end = endOfLine(position);
+            byte first = bytes[position];
+            if(first == 'r' && startsWith(position, end, "room ")) {
+                rooms.add(readWord(position + 5, end), position);
+            } else if(first == 'i' && startsWith(position, end, "item ")) {
+                items.add(readWord(position + 5, end), position);
+            } else if(first == 'n' && startsWith(position, end, "npc ")) {
+                characters.add(readWord(position + 4, end), position);
+            } else if(first == 'd' && startsWith(position, end, "dialogue ")) {
+                dialogues.add(readWord(position + 9, end), position);
+            } else if(first == 'r' && startsWith(position, end, "rule ")) {
+                // a rule is known by its verb, item and target.
+                rules.add(String.join(" ", split(decode(position + 5, end))), position);
+            } else if(first == ' ' || first == '\t') {
+                // a line of a definition; only "set <flag>" is looked at now.
+                int start = skipSpaces(position, end);
+                if(startsWith(start, end, "set ")) {
+                    flagsSet.add(skipSpaces(start + 4, end));
+                }
+            } else if(first != '#' && first != '\n' && first != '\r') {
+                String[] words = split(decode(position, end));
+                if(words.length > 0) {
+                    header.put(words[0], decode(position, end).substring(words[0].length()).trim());
+                }
+            }
+            position = end + 1;
+        }
+        rooms.done();
+        items.done();
+        characters.done();
+        dialogues.done();
+        rules.done();
+        compiled = new AtomicReferenceArray<>(dialogues.ids.size());
+        checkFlags(fileName, flagsSet);
+        internNames();
+    }
+
+    /**
+     * Check that every flag set by a rule or a dialogue (the flags at
+     * "positions"), and every flag of the header "sidestory", is in the
+     * header "flags". A flag that is not there could never be set, so
+     * this is found when the file is read, not when the line is used.
+     * @throws IllegalArgumentException if a flag is not in the header "flags".
+     */
+    private void checkFlags(String fileName, List<Integer> positions)
+    {
+        List<String> flags = Arrays.asList(getHeaderWords("flags"));
+        for(int position : positions) {
+            String flag = readWord(position, endOfLine(position));
+            if(!flags.contains(flag)) {
+                throw new IllegalArgumentException(fileName + ", line " + getLineNumber(position)
+                    + ": the flag " + flag + " is not in the header \"flags\".");
+            }
+        }
+        for(String flag : getHeaderWords("sidestory")) {
+            if(!flags.contains(flag)) {
+                throw new IllegalArgumentException(fileName + ": the side story needs the flag " + flag
+                    + ", which is not in the header \"flags\".");
+            }
+        }
+    }
+
+    /**
+     * Add the names the user may type (items, characters and directions)
+     * to the symbol table. Only names from a world file are added, so the
+     * table does not grow with what users type.
+     */
+    private void internNames()
+    {
+        for(String id : items.ids) {
+            Symbols.intern(id);
+        }
+        for(String id : characters.ids) {
+            Symbols.intern(id);
+        }
+        for(String direction : getHeaderWords("directions")) {
+            Symbols.intern(direction);
+        }
+    }
+
+    /**
+     * @return A checksum of the whole file, to tell whether a saved game
+     * was saved in this world.
+     */
+    public int getChecksum()
+    {
+        return checksum;
+    }
+
+    /**
+     * @return A value from the header of the file, with quotes removed, or null.
+     */
+    public String getHeader(String key)
+    {
+        String value = header.get(key);
+        if(value != null && value.startsWith("\"")) {
+            return split(value)[0];
+        }
+        return value;
+    }
+
+    /**
+     * @return The words of a header line, such as the list of directions.
+     */
+    public String[] getHeaderWords(String key)
+    {
+        String value = header.get(key);
+        return value == null ? new String[0] : split(value);
+    }
+
+    /**
+     * @return The ids of all rooms, in the order they are in the file.
+     */
+    public List<String> getRoomIds()
+    {
+        return Collections.unmodifiableList(rooms.ids);
+    }
+
+    /**
+     * @return The ids of all items, in the order they are in the file.
+     */
+    public List<String> getItemIds()
+    {
+        return Collections.unmodifiableList(items.ids);
+    }
+
+    /**
+     * @return The ids of all characters, in the order they are in the file.
+     */
+    public List<String> getCharacterIds()
+    {
+        return Collections.unmodifiableList(characters.ids);
+    }
+
+    /**
+     * @return The number of the room with the id "id", or -1 if there is none.
+     */
+    public int getRoomIndex(String id)
+    {
+        return rooms.getIndex(id);
+    }
+
+    /**
+     * @return The number of the item with the id "id", or -1 if there is none.
+     */
+    public int getItemIndex(String id)
+    {
+        return items.getIndex(id);
+    }
+
+    /**
+     * @return The number of the character with the id "id", or -1 if there is none.
+     */
+    public int getCharacterIndex(String id)
+    {
+        return characters.getIndex(id);
+    }
+
+    /**
+     * @return The id of the room with the number "index".
+     */
+    public String getRoomId(int index)
+    {
+        return rooms.ids.get(index);
+    }
+
+    /**
+     * @return The id of the item with the number "index".
+     */
+    public String getItemId(int index)
+    {
+        return items.ids.get(index);
+    }
+
+    /**
+     * @return The id of the character with the number "index".
+     */
+    public String getCharacterId(int index)
+    {
+        return characters.ids.get(index);
+    }
+
+    /**
+     * @return The exits of all rooms, as a graph. The graph is made the
+     * first time it is needed, which reads every room definition.
+     */
+    public synchronized RoomGraph getGraph()
+    {
+        if(graph == null) {
+            graph = new RoomGraph(this);
+        }
+        return graph;
+    }
+
+    /**
+     * @return The ways to the destinations of "goto" over the exits of
+     * the graph, shared by all games of this world file.
+     */
+    public synchronized RouteTables getRouteTables()
+    {
+        if(routeTables == null) {
+            routeTables = new RouteTables(getGraph());
+        }
+        return routeTables;
+    }
+
+    /**
+     * @return The short descriptions of all rooms (such as "Physics Lab"),
+     * by room number. They are read the first time they are needed, which
+     * reads every room definition. The array is shared, and must not be
+     * changed.
+     */
+    public synchronized String[] getRoomNames()
+    {
+        if(roomNames == null) {
+            String[] names = new String[rooms.ids.size()];
+            for(int i = 0; i < names.length; i++) {
+                names[i] = readRoomOnce(rooms.ids.get(i)).get(0)[2];
+            }
+            roomNames = names;
+        }
+        return roomNames;
+    }
+
+    /**
+     * @return The lines of the room definition with this id, split into
+     * words. The lines are shared, and must not be changed.
+     */
+    public List<String[]> readRoom(String id)
+    {
+        return readDefinition(rooms, "room", id, true);
+    }
+
+    /**
+     * @return The lines of the room definition with this id, split into
+     * words, without keeping them (for reading every room once).
+     */
+    public List<String[]> readRoomOnce(String id)
+    {
+        return readDefinition(rooms, "room", id, false);
+    }
+
+    /**
+     * @return The lines of the item definition with this id, split into
+     * words. The lines are shared, and must not be changed.
+     */
+    public List<String[]> readItem(String id)
+    {
+        return readDefinition(items, "item", id, true);
+    }
+
+    /**
+     * @return The lines of the character definition with this id, split
+     * into words. The lines are shared, and must not be changed.
+     */
+    public List<String[]> readCharacter(String id)
+    {
+        return readDefinition(characters, "npc", id, true);
+    }
+
+    /**
+     * @return The dialogue with this id, compiled from its definition the
+     * first time it is needed, or null if the world has no such dialogue.
+     * The dialogue is shared.
+     * @throws IllegalArgumentException if the dialogue is not right.
+     */
+    public Dialogue getDialogue(String id)
+    {
+        int number = dialogues.getIndex(id);
+        if(number < 0) {
+            return null;
+        }
+        Dialogue dialogue = compiled.get(number);
+        if(dialogue == null) {
+            // if two threads compile it at once, both results are the same.
+            dialogue = new Dialogue(this, id, readDefinition(dialogues, "dialogue", id, false));
+            compiled.set(number, dialogue);
+        }
+        return dialogue;
+    }
+
+    /**
+     * @return The rules for using and giving items. They are compiled the
+     * first time they are needed, which reads every rule definition.
+     * @throws IllegalArgumentException if a rule is not right.
+     */
+    public synchronized RuleTable getRules()
+    {
+        if(ruleTable == null) {
+            ArrayList<List<String[]>> definitions = new ArrayList<>();
+            for(int i = 0; i < rules.ids.size(); i++) {
+                definitions.add(readDefinition(rules, i, false));
+            }
+            ruleTable = new RuleTable(this, definitions);
+        }
+        return ruleTable;
+    }
+
+    /**
+     * Read a definition line and the indented lines below it, or return
+     * them if they have been kept.
+     * @param keep Keep the lines for the next time.
+     */
+    private List<String[]> readDefinition(Index index, String kind, String id, boolean keep)
+    {
+        int number = index.getIndex(id);
+        if(number < 0) {
+            throw new IllegalArgumentException("The world has no " + kind + " called " + id + ".");
+        }
+        return readDefinition(index, number, keep);
+    }
+
+    /**
+     * Read definition number "number" of an index, or return it if it has
+     * been kept.
+     * @param keep Keep the lines for the next time.
+     */
+    private List<String[]> readDefinition(Index index, int number, boolean keep)
+    {
+        List<String[]> lines = index.read.get(number);
+        if(lines != null) {
+            return lines;
+        }
+        lines = new ArrayList<>();
+        int position = index.positions[number];
+        int length = bytes.length;
+        do {
+            int end = endOfLine(position);
+            String[] words = split(decode(position, end));
+            if(words.length > 0 && !words[0].startsWith("#")) {
+                lines.add(words);
+            }
+            position = end + 1;
+        } while(position < length && isPartOfDefinition(position));
+        lines = Collections.unmodifiableList(lines);
+        if(keep) {
+            // if two threads read it at once, both results are the same.
+            index.read.set(number, lines);
+        }
+        return lines;
+    }
+
+    /**
+     * @return true if the line at "position" belongs to the definition
+     * above it: it is indented, empty, or a comment. So a blank line
+     * inside a definition does not end it.
+     */
+    private boolean isPartOfDefinition(int position)
+    {
+        byte first = bytes[position];
+        return first == ' ' || first == '\t' || first == '#' || first == '\n' || first == '\r';
+    }
+
+    /**
+     * @return The position of the end of the line starting at "position".
+     */
+    private int endOfLine(int position)
+    {
+        int length = bytes.length;
+        while(position < length && bytes[position] != '\n') {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * @return The position of the first character from "start" on (up to
+     * "end") which is not a space or a tab.
+     */
+    private int skipSpaces(int start, int end)
+    {
+        while(start < end && (bytes[start] == ' ' || bytes[start] == '\t')) {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * @return The number of the line (from 1) with the position "position".
+     */
+    private int getLineNumber(int position)
+    {
+        int line = 1;
+        for(int i = 0; i < position; i++) {
+            if(bytes[i] == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    /**
+     * @return true if the line between "start" and "end" starts with "prefix".
+     */
+    private boolean startsWith(int start, int end, String prefix)
+    {
+        if(end - start < prefix.length()) {
+            return false;
+        }
+        for(int i = 0; i < prefix.length(); i++) {
+            if(bytes[start + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The word starting at "start" (up to a space or the end of the line).
+     */
+    private String readWord(int start, int end)
+    {
+        int position = start;
+        while(position < end && bytes[position] > ' ') {
+            position++;
+        }
+        return decode(start, position);
+    }
+
+    /**
+     * @return The text between "start" and "end".
+     */
+    private String decode(int start, int end)
+    {
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Split a line into words. Text in double quotes is one word.
+     */
+    public static String[] split(String line)
+    {
+        ArrayList<String> words = new ArrayList<>();
+        int i = 0;
+        while(i < line.length()) {
+            char c = line.charAt(i);
+            if(Character.isWhitespace(c)) {
+                i++;
+            } else if(c == '"') {
+                int end = line.indexOf('"', i + 1);
+                if(end < 0) {
+                    end = line.length();
+                }
+                words.add(line.substring(i + 1, end));
+                i = end + 1;
+            } else {
+                int end = i;
+                while(end < line.length() && !Character.isWhitespace(line.charAt(end))) {
+                    end++;
+                }
+                words.add(line.substring(i, end));
+                i = end;
+            }
+        }
+        return words.toArray(new String[words.size()]);
+    }
+
+    /**
+     * The definitions of one kind (rooms, items, characters, dialogues or
+     * rules): their ids in the order they are in the file, and where each
+     * one starts.
+     */
+    private static class Index
+    {
+        private ArrayList<String> ids = new ArrayList<>();
+        private HashMap<String, Integer> indexes = new HashMap<>();
+        private int[] positions = new int[16];
+        private AtomicReferenceArray<List<String[]>> read;     // number -> lines, once read
+
+        /**
+         * Add the definition with the id "id", starting at "position".
+         */
+        private void add(String id, int position)
+        {
+            if(ids.size() == positions.length) {
+                positions = Arrays.copyOf(positions, 2 * positions.length);
+            }
+            indexes.put(id, ids.size());
+            positions[ids.size()] = position;
+            ids.add(id);
+        }
+
+        /**
+         * Called when every definition has been added.
+         */
+        private void done()
+        {
+            read = new AtomicReferenceArray<>(ids.size());
+        }
+
+        /**
+         * @return The number of the definition with the id "id", or -1.
+         */
+        private int getIndex(String id)
+        {
+            Integer index = indexes.get(id);
+            return index != null ? index : -1;
+        }
+    }
+}
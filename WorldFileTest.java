@@ -0,0 +1,112 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * This class is part of the "World of Tomorrow" game.
+ *
+ * Tests of WorldFile. There is no test framework in the project: run the
+ * main method, which prints "WorldFileTest: OK", or fails with the first
+ * check that does not hold.
+ *
+ * @author Sarunas Djacenko
+ * @version 2017.12.08
+ */
+public class WorldFileTest
+{
+    private static final String WORLD_FILE = "worlds/tomorrow.world";
+
+    public static void main(String args[]) throws IOException {
+        theWorldLoads();
+        settingAnUndeclaredFlagIsRejected();
+        aSideStoryOfUndeclaredFlagsIsRejected();
+        aBlankLineDoesNotEndADefinition();
+        System.out.println("WorldFileTest: OK");
+    }
+
+    /**
+     * The world of the game has every flag it uses in its header.
+     */
+    private static void theWorldLoads() throws IOException
+    {
+        check(WorldFile.load(WORLD_FILE).getHeaderWords("flags").length > 0, "the world has flags");
+    }
+
+    /**
+     * A dialogue that sets a flag which is not in the header "flags" is
+     * found when the file is read, before the dialogue is ever used.
+     */
+    private static void settingAnUndeclaredFlagIsRejected() throws IOException
+    {
+        Path file = changeWorld("        set guard\n", "        set gaurd\n");
+        try {
+            WorldFile.load(file.toString());
+            check(false, "a dialogue setting the flag gaurd is rejected");
+        } catch(IllegalArgumentException e) {
+            check(e.getMessage().contains("gaurd"), "the message names the flag");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * A side story that needs a flag which is not in the header "flags"
+     * could never be completed, so it is rejected too.
+     */
+    private static void aSideStoryOfUndeclaredFlagsIsRejected() throws IOException
+    {
+        Path file = changeWorld("sidestory child guard librarian", "sidestory child guard chef");
+        try {
+            WorldFile.load(file.toString());
+            check(false, "a side story needing the flag chef is rejected");
+        } catch(IllegalArgumentException e) {
+            check(e.getMessage().contains("chef"), "the message names the flag");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * The lines below a blank line inside a definition still belong to
+     * it.
+     */
+    private static void aBlankLineDoesNotEndADefinition() throws IOException
+    {
+        Path file = changeWorld("    exit east hallwaylower\n    item machine\n",
+                                "    exit east hallwaylower\n\n    item machine\n");
+        try {
+            boolean hasMachine = false;
+            for(String[] line : WorldFile.load(file.toString()).readRoom("physlab")) {
+                hasMachine |= line[0].equals("item") && line[1].equals("machine");
+            }
+            check(hasMachine, "the line after the blank line is read");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * @return A new file with the world of the game, where "text" is
+     * replaced by "replacement".
+     */
+    private static Path changeWorld(String text, String replacement) throws IOException
+    {
+        String world = new String(Files.readAllBytes(Paths.get(WORLD_FILE)), StandardCharsets.UTF_8);
+        check(world.contains(text), "the world has " + text.trim());
+        Path file = Files.createTempFile("world", ".world");
+        Files.write(file, world.replace(text, replacement).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * Fail with "message" unless "condition" holds.
+     */
+    private static void check(boolean condition, String message)
+    {
+        if(!condition) {
+            throw new AssertionError("WorldFileTest: " + message);
+        }
+    }
+}